@@ -0,0 +1,92 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.automatalib.automata.fsa.impl.compact.CompactDFA;
+import net.automatalib.util.automata.random.RandomAutomata;
+import net.automatalib.words.Alphabet;
+import net.automatalib.words.impl.Alphabets;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.learnlib.cav2015.performance.DFA2Mealy;
+
+/**
+ * Compares the conversions of a random, minimal compact DFA into a minimal Mealy machine:
+ * through the generic DFA interface ({@code generic}), by reading the int successors of the
+ * compact DFA ({@code compact}), both followed by minimizing the result, and by reading the
+ * successors and merging states with equal successors instead ({@code minimal}), which is
+ * only correct for minimal DFAs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class DFA2MealyBenchmark {
+	
+	@Param({ "1000", "10000", "100000" })
+	public int states;
+	
+	@Param({ "10" })
+	public int inputs;
+	
+	@Param({ "generic", "compact", "minimal" })
+	public String converter;
+	
+	private Alphabet<Integer> alphabet;
+	private CompactDFA<Integer> dfa;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		alphabet = Alphabets.integers(0, inputs - 1);
+		dfa = RandomAutomata.randomDFA(new Random(42L), states, alphabet);
+		switch (converter) {
+		case "generic": case "compact": case "minimal":
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown converter " + converter);
+		}
+	}
+	
+	@Benchmark
+	public Object convert() {
+		switch (converter) {
+		case "generic":
+			return DFA2Mealy.dfa2mealy(alphabet, dfa);
+		case "compact":
+			return DFA2Mealy.dfa2mealy(alphabet, dfa, false);
+		default:
+			return DFA2Mealy.dfa2mealy(alphabet, dfa, true);
+		}
+	}
+}
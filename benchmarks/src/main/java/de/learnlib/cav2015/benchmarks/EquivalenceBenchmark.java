@@ -0,0 +1,125 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.automatalib.automata.UniversalDeterministicAutomaton;
+import net.automatalib.automata.fsa.impl.FastDFA;
+import net.automatalib.automata.transout.impl.FastMealy;
+import net.automatalib.util.automata.Automata;
+import net.automatalib.words.Alphabet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.learnlib.cav2015.performance.EquivalenceChecker;
+import de.learnlib.cav2015.performance.Util;
+import de.learnlib.examples.LearningExample.DFALearningExample;
+import de.learnlib.examples.LearningExample.MealyLearningExample;
+
+/**
+ * Compares the generic {@link Automata#findSeparatingWord} with the {@link EquivalenceChecker}
+ * used by the performance tools. A random compact target is checked against an equivalent,
+ * minimized copy that is not compact (like the hypotheses of most learners), which is the
+ * worst case for both, as the whole product has to be explored. The score of the
+ * {@code compact} checker includes converting the target, while the {@code reused} checker
+ * converts it only once, as the performance tools do for all rounds of a run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class EquivalenceBenchmark {
+	
+	@Param({ "dfa", "mealy" })
+	public String type;
+	
+	@Param({ "100", "1000" })
+	public int states;
+	
+	@Param({ "10", "100" })
+	public int inputs;
+	
+	@Param({ "generic", "compact", "reused" })
+	public String checker;
+	
+	private Alphabet<Integer> alphabet;
+	private UniversalDeterministicAutomaton<?, Integer, ?, ?, ?> target;
+	private UniversalDeterministicAutomaton<?, Integer, ?, ?, ?> hypothesis;
+	private boolean compact;
+	private EquivalenceChecker<Integer> reusedChecker;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42L);
+		switch (type) {
+		case "dfa":
+			DFALearningExample<Integer> dfaExample = Util.randomDFAExample(random, inputs, states);
+			alphabet = dfaExample.getAlphabet();
+			target = dfaExample.getReferenceAutomaton();
+			hypothesis = Automata.minimize(dfaExample.getReferenceAutomaton(), alphabet, new FastDFA<>(alphabet));
+			break;
+		case "mealy":
+			MealyLearningExample<Integer,Boolean> mealyExample = Util.randomMealyExample(random, inputs, states);
+			alphabet = mealyExample.getAlphabet();
+			target = mealyExample.getReferenceAutomaton();
+			hypothesis = Automata.minimize(mealyExample.getReferenceAutomaton(), alphabet,
+					new FastMealy<Integer,Boolean>(alphabet));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown type " + type);
+		}
+		switch (checker) {
+		case "generic":
+			compact = false;
+			break;
+		case "compact":
+			compact = true;
+			break;
+		case "reused":
+			reusedChecker = new EquivalenceChecker<>(target, alphabet);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown checker " + checker);
+		}
+	}
+	
+	@Benchmark
+	public Object check() {
+		if (reusedChecker != null) {
+			return reusedChecker.findSeparatingWord(hypothesis);
+		}
+		if (compact) {
+			return new EquivalenceChecker<>(target, alphabet).findSeparatingWord(hypothesis);
+		}
+		return Automata.findSeparatingWord(target, hypothesis, alphabet);
+	}
+}
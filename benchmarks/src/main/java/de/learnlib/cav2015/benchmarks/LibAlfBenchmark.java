@@ -0,0 +1,137 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.automatalib.automata.fsa.DFA;
+import net.automatalib.util.automata.Automata;
+import net.automatalib.words.Alphabet;
+import net.automatalib.words.Word;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.learnlib.api.LearningAlgorithm.DFALearner;
+import de.learnlib.api.MembershipOracle;
+import de.learnlib.cache.dfa.DFACaches;
+import de.learnlib.cav2015.performance.LibAlf;
+import de.learnlib.cav2015.performance.LibAlfExamples;
+import de.learnlib.examples.LearningExample.DFALearningExample;
+import de.learnlib.libalf.LibalfActiveDFALearner;
+import de.learnlib.oracles.DefaultQuery;
+import de.learnlib.oracles.SimulatorOracle;
+
+/**
+ * Runs every LearnLib/LibAlf learner pair from {@link LibAlf} on the examples of
+ * {@link LibAlfExamples}. As in the <tt>libalf-examples</tt> tool, only the LearnLib
+ * learners are backed by a query cache. The score includes the (perfect) equivalence
+ * checks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class LibAlfBenchmark {
+	
+	@Param({ "angluin-classic", "angluin-col", "rivest-schapire", "kearns-vazirani", "kearns-vazirani-binsearch" })
+	public String learner;
+	
+	@Param({ "random-5-100", "random-5-500", "random-10-100", "random-10-500", "random-20-100", "random-20-500",
+		"peterson2", "keylock-5-64", "keylockc-5-64", "keylock-5-128", "keylockc-5-128",
+		"keylock-10-64", "keylockc-10-64", "keylock-10-128", "keylockc-10-128" })
+	public String example;
+	
+	@Param({ "learnlib", "libalf" })
+	public String library;
+	
+	private LibAlf.Learner learnerPair;
+	private DFALearningExample<?> learningExample;
+	private boolean libalf;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		learnerPair = LibAlf.getLearner(learner);
+		if (learnerPair == null) {
+			throw new IllegalArgumentException("Unknown learner " + learner);
+		}
+		learningExample = LibAlfExamples.getExample(example);
+		if (learningExample == null) {
+			throw new IllegalArgumentException("Unknown example " + example);
+		}
+		switch (library) {
+		case "learnlib":
+			libalf = false;
+			break;
+		case "libalf":
+			libalf = true;
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown library " + library);
+		}
+	}
+	
+	@Benchmark
+	public Object learn() {
+		return libalf ? learnLibAlf(learningExample, learnerPair) : learnLearnLib(learningExample, learnerPair);
+	}
+	
+	private static <I> DFA<?,I> learnLearnLib(DFALearningExample<I> example, LibAlf.Learner learnerPair) {
+		MembershipOracle.DFAMembershipOracle<I> cacheOracle
+			= DFACaches.createTreeCache(example.getAlphabet(), new SimulatorOracle.DFASimulatorOracle<>(example.getReferenceAutomaton()));
+		return learn(example, learnerPair.createLearnLibLearner(example.getAlphabet(), cacheOracle));
+	}
+	
+	private static <I> DFA<?,I> learnLibAlf(DFALearningExample<I> example, LibAlf.Learner learnerPair) {
+		LibalfActiveDFALearner<I> learner = learnerPair.createLibalfLearner(example.getAlphabet(),
+				new SimulatorOracle.DFASimulatorOracle<>(example.getReferenceAutomaton()));
+		try {
+			return learn(example, learner);
+		}
+		finally {
+			learner.dispose();
+		}
+	}
+	
+	private static <I> DFA<?,I> learn(DFALearningExample<I> example, DFALearner<I> learner) {
+		DFA<?,I> target = example.getReferenceAutomaton();
+		Alphabet<I> alphabet = example.getAlphabet();
+		
+		learner.startLearning();
+		DFA<?,I> hyp = learner.getHypothesisModel();
+		
+		Word<I> ceWord;
+		while ((ceWord = Automata.findSeparatingWord(target, hyp, alphabet)) != null) {
+			learner.refineHypothesis(new DefaultQuery<>(ceWord, target.computeOutput(ceWord)));
+			hyp = learner.getHypothesisModel();
+		}
+		
+		return hyp;
+	}
+}
@@ -0,0 +1,215 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.learnviz;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import net.automatalib.commons.dotutil.DOT;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Renders DOT graphs to PNG images in the background. Images are stored in a cache
+ * directory under the hash of their DOT text, so the name of an image is known before
+ * it is rendered, and identical graphs (e.g., an unchanged discrimination tree) are only
+ * rendered once. Graphs with more than {@code layoutLimit} nodes are laid out using
+ * the cheaper {@code sfdp} engine; graphs with more than {@code summaryLimit} nodes
+ * are not rendered at all, only their DOT source is stored.
+ */
+final class DOTRenderPool {
+	
+	private final File cacheDir;
+	private final int layoutLimit;
+	private final int summaryLimit;
+	private final ExecutorService renderers;
+	private final ExecutorService presenter;
+	private final ConcurrentMap<File, Future<?>> jobs = new ConcurrentHashMap<>();
+	
+	public DOTRenderPool(File cacheDir, int layoutLimit, int summaryLimit, int numThreads) {
+		this.cacheDir = cacheDir;
+		this.layoutLimit = layoutLimit;
+		this.summaryLimit = summaryLimit;
+		this.renderers = Executors.newFixedThreadPool(numThreads, r -> {
+			Thread t = new Thread(r, "dot-render");
+			t.setDaemon(true);
+			return t;
+		});
+		this.presenter = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "dot-present");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+	
+	/**
+	 * The directory of the rendered images, to which other files referred to by the same
+	 * page may be written as well.
+	 */
+	public File getCacheDir() {
+		return cacheDir;
+	}
+	
+	public boolean isSummarized(int numNodes) {
+		return numNodes > summaryLimit;
+	}
+	
+	/**
+	 * Schedules rendering the given DOT text, unless it has been rendered before.
+	 * 
+	 * @return the image file, or the file containing the DOT source if the graph
+	 * is too large to be rendered. The file may not exist yet.
+	 */
+	public File render(String dotText, int numNodes) {
+		String hash = Hashing.sha1().hashString(dotText, StandardCharsets.UTF_8).toString();
+		if (isSummarized(numNodes)) {
+			File dotFile = new File(cacheDir, hash + ".dot");
+			submit(dotFile, () -> writeDOT(dotText, dotFile));
+			return dotFile;
+		}
+		String engine = (numNodes > layoutLimit) ? "sfdp" : "dot";
+		File pngFile = new File(cacheDir, hash + "-" + engine + ".png");
+		submit(pngFile, () -> runDOT(dotText, engine, pngFile));
+		return pngFile;
+	}
+	
+	/**
+	 * Runs the given action once all renderings scheduled so far are finished. Actions
+	 * are run in the order they were passed to this method.
+	 */
+	public void whenRendered(Runnable action) {
+		List<Future<?>> pending = new ArrayList<>();
+		for (Future<?> job : jobs.values()) {
+			if (!job.isDone()) {
+				pending.add(job);
+			}
+		}
+		presenter.submit(() -> {
+			for (Future<?> job : pending) {
+				try {
+					job.get();
+				}
+				catch (ExecutionException ex) {
+					// already reported by the job itself
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			action.run();
+		});
+	}
+	
+	/**
+	 * Waits for all scheduled renderings and actions to finish.
+	 */
+	public void shutdown() throws InterruptedException {
+		presenter.shutdown();
+		presenter.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		renderers.shutdown();
+		renderers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+	
+	private interface IOAction {
+		void run() throws IOException;
+	}
+	
+	private void submit(File file, IOAction action) {
+		if (jobs.containsKey(file) || file.exists()) {
+			return;
+		}
+		jobs.computeIfAbsent(file, f -> renderers.submit(() -> {
+			try {
+				action.run();
+			}
+			catch (IOException ex) {
+				System.err.println("Error: could not render " + f + ": " + ex.getMessage());
+				throw ex;
+			}
+			return f;
+		}));
+	}
+	
+	private static void writeDOT(String dotText, File dotFile) throws IOException {
+		File tmpFile = new File(dotFile.getPath() + ".tmp");
+		Files.write(tmpFile.toPath(), dotText.getBytes(StandardCharsets.UTF_8));
+		Files.move(tmpFile.toPath(), dotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	// The DOT text is piped to the renderer, which writes the image to a temporary file
+	// that is moved into place only on success, such that the cache never contains
+	// partial images. Its error output is read by a separate thread, as the renderer
+	// blocks once the pipe is full, possibly before it has read all of the DOT text
+	private static void runDOT(String dotText, String engine, File pngFile) throws IOException {
+		File tmpFile = new File(pngFile.getPath() + ".tmp");
+		Process dot = DOT.executeDOT("png", "-K" + engine, "-o" + tmpFile.getAbsolutePath());
+		FutureTask<String> errorReader = new FutureTask<>(() -> {
+			try (InputStream err = dot.getErrorStream()) {
+				return new String(ByteStreams.toByteArray(err), StandardCharsets.UTF_8).trim();
+			}
+		});
+		Thread errorThread = new Thread(errorReader, "dot-stderr");
+		errorThread.setDaemon(true);
+		errorThread.start();
+		try (OutputStream os = dot.getOutputStream();
+				Writer w = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
+			w.write(dotText);
+		}
+		catch (IOException ex) {
+			// dot terminated prematurely, which is reported through its exit code below
+		}
+		dot.getInputStream().close();
+		int exitCode;
+		String errors;
+		try {
+			exitCode = dot.waitFor();
+			errors = errorReader.get();
+		}
+		catch (InterruptedException ex) {
+			dot.destroy();
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while waiting for dot");
+		}
+		catch (ExecutionException ex) {
+			throw new IOException("could not read the error output of dot", ex.getCause());
+		}
+		if (exitCode != 0) {
+			tmpFile.delete();
+			throw new IOException("dot exited with code " + exitCode + (errors.isEmpty() ? "" : ": " + errors));
+		}
+		Files.move(tmpFile.toPath(), pngFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,52 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.learnviz;
+
+import java.io.IOException;
+
+/**
+ * A graph given by its DOT text, which is rendered by the {@link DOTRenderPool}.
+ */
+final class DOTShowable extends Showable {
+	
+	private final String dotText;
+	private final int numNodes;
+	private final int numEdges;
+	
+	public DOTShowable(String title, String dotText, int numNodes, int numEdges) {
+		super(title);
+		this.dotText = dotText;
+		this.numNodes = numNodes;
+		this.numEdges = numEdges;
+	}
+
+	@Override
+	public void writeHTML(Appendable a, DOTRenderPool renderPool) throws IOException {
+		String uri = renderPool.render(dotText, numNodes).getName();
+		if (renderPool.isSummarized(numNodes)) {
+			a.append(numNodes + " nodes, " + numEdges + " edges (too large to render, <a href=\"" + uri + "\" target=\"_blank\">DOT source</a>)");
+			return;
+		}
+		a.append("<a href=\"" + uri + "\" target=\"_blank\"><img src=\"" + uri + "\"></a>");
+	}
+
+	@Override
+	public void record(EventLog.Writer log) throws IOException {
+		log.writeGraph(getTitle(), numNodes, numEdges, dotText);
+	}
+	
+}
@@ -0,0 +1,244 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.learnviz;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.automatalib.words.Word;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+/**
+ * A compact log of the events of a LearnViz session, which can be replayed later. The
+ * log is a GZIP-compressed stream, starting with a magic int. Each event starts with
+ * its kind: {@link #SHOW} is followed by the number of showables and the showables
+ * themselves, {@link #MESSAGE} by the text of the message, and {@link #END} marks the
+ * end of the log. A showable is stored as its type, its title and its contents:
+ * <ul>
+ * <li>a graph as its number of nodes and edges, and its DOT text,</li>
+ * <li>an HTML snippet (e.g., an observation table) as its text,</li>
+ * <li>a batch of queries as their number, followed by the queries as strings.</li>
+ * </ul>
+ * Titles, DOT texts and HTML snippets recur a lot (e.g., a discrimination tree is
+ * shown several times within a round), so each distinct one is stored only once, and
+ * later occurrences refer to its index. A reference of {@code -1} is followed by the
+ * length and UTF-8 bytes of a new string.
+ */
+final class EventLog {
+	
+	public interface Handler {
+		void show(Showable... showables) throws IOException;
+		void message(String message) throws IOException;
+	}
+	
+	private static final int MAGIC = 0x4C564C31; // "LVL1"
+	
+	private static final byte END = 0;
+	private static final byte SHOW = 1;
+	private static final byte MESSAGE = 2;
+	
+	private static final byte GRAPH = 0;
+	private static final byte HTML = 1;
+	private static final byte QUERIES = 2;
+	
+	private EventLog() {}
+	
+	public static final class Writer implements Closeable {
+		
+		private final DataOutputStream out;
+		private final Map<HashCode, Integer> sharedIds = new HashMap<>();
+		
+		public Writer(File file) throws IOException {
+			this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file), 65536)));
+			out.writeInt(MAGIC);
+		}
+		
+		public void show(Showable... showables) throws IOException {
+			out.writeByte(SHOW);
+			out.writeInt(showables.length);
+			for (Showable s : showables) {
+				s.record(this);
+			}
+		}
+		
+		public void message(String message) throws IOException {
+			out.writeByte(MESSAGE);
+			writeShared(message);
+		}
+		
+		void writeGraph(String title, int numNodes, int numEdges, String dotText) throws IOException {
+			out.writeByte(GRAPH);
+			writeShared(title);
+			out.writeInt(numNodes);
+			out.writeInt(numEdges);
+			writeShared(dotText);
+		}
+		
+		void writeHTML(String title, String html) throws IOException {
+			out.writeByte(HTML);
+			writeShared(title);
+			writeShared(html);
+		}
+		
+		void writeQueries(String title, int numQueries, Iterable<? extends Word<?>> queries) throws IOException {
+			out.writeByte(QUERIES);
+			writeShared(title);
+			out.writeInt(numQueries);
+			for (Word<?> q : queries) {
+				writeString(q.isEmpty() ? "" : q.toString());
+			}
+		}
+		
+		// only the hashes of shared strings are kept, not the strings themselves
+		private void writeShared(String str) throws IOException {
+			HashCode hash = Hashing.sha1().hashString(str, StandardCharsets.UTF_8);
+			Integer id = sharedIds.get(hash);
+			if (id != null) {
+				out.writeInt(id.intValue());
+				return;
+			}
+			sharedIds.put(hash, sharedIds.size());
+			out.writeInt(-1);
+			writeString(str);
+		}
+		
+		private void writeString(String str) throws IOException {
+			byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+		
+		@Override
+		public void close() throws IOException {
+			out.writeByte(END);
+			out.close();
+		}
+	}
+	
+	/**
+	 * Passes all events of the given log to the handler. Batches of queries are passed
+	 * as their first page, while their further pages are written to the given directory.
+	 * 
+	 * @return the number of events
+	 * @throws IOException if the log cannot be read, or is invalid or truncated. The
+	 * events before the error have been passed to the handler
+	 */
+	public static int replay(File file, File pagesDir, Handler handler) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file), 65536)))) {
+			if (readMagic(in) != MAGIC) {
+				throw new IOException(file + " is not a LearnViz event log");
+			}
+			List<String> shared = new ArrayList<>();
+			int numEvents = 0;
+			while (true) {
+				byte kind = in.readByte();
+				switch (kind) {
+				case END:
+					return numEvents;
+				case SHOW:
+					Showable[] showables = new Showable[in.readInt()];
+					for (int i = 0; i < showables.length; i++) {
+						showables[i] = readShowable(in, shared, pagesDir);
+					}
+					handler.show(showables);
+					break;
+				case MESSAGE:
+					handler.message(readShared(in, shared));
+					break;
+				default:
+					throw new IOException("invalid event kind " + kind);
+				}
+				numEvents++;
+			}
+		}
+		catch (EOFException ex) {
+			throw new IOException(file + " is truncated", ex);
+		}
+	}
+	
+	private static int readMagic(DataInputStream in) throws IOException {
+		try {
+			return in.readInt();
+		}
+		catch (EOFException ex) {
+			return 0;
+		}
+	}
+	
+	private static Showable readShowable(DataInputStream in, List<String> shared, File pagesDir) throws IOException {
+		byte type = in.readByte();
+		String title = readShared(in, shared);
+		switch (type) {
+		case GRAPH:
+			int numNodes = in.readInt();
+			int numEdges = in.readInt();
+			return new DOTShowable(title, readShared(in, shared), numNodes, numEdges);
+		case HTML:
+			return new HTMLShowable(title, readShared(in, shared));
+		case QUERIES:
+			int numQueries = in.readInt();
+			if (numQueries < 0) {
+				throw new IOException("invalid number of queries " + numQueries);
+			}
+			StringBuilder html = new StringBuilder();
+			QueriesShowable.writePages(html, pagesDir, numQueries, () -> readString(in));
+			return new HTMLShowable(title, html.toString());
+		default:
+			throw new IOException("invalid showable type " + type);
+		}
+	}
+	
+	private static String readShared(DataInputStream in, List<String> shared) throws IOException {
+		int id = in.readInt();
+		if (id == -1) {
+			String str = readString(in);
+			shared.add(str);
+			return str;
+		}
+		if (id < 0 || id >= shared.size()) {
+			throw new IOException("invalid string reference " + id);
+		}
+		return shared.get(id);
+	}
+	
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			throw new IOException("invalid string length " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -16,16 +16,8 @@
  */
 package de.learnlib.cav2015.learnviz;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.Writer;
 
-import net.automatalib.commons.dotutil.DOT;
 import net.automatalib.graphs.Graph;
 import net.automatalib.graphs.dot.GraphDOTHelper;
 import net.automatalib.util.graphs.dot.GraphDOT;
@@ -43,18 +35,24 @@ final class GraphShowable<N,E> extends Showable {
 	}
 
 
-	@Override
-	public void writeHTML(Appendable a) throws IOException {
-		File dotFile = File.createTempFile("learnlib", ".dot");
-		try (Writer w = new BufferedWriter(new FileWriter(dotFile))) {
-			GraphDOT.write(graph, w, additionalHelpers);
-		}
-		File pngFile = File.createTempFile("learnlib", ".png");
-		try (Reader r = new BufferedReader(new FileReader(dotFile))) {
-			DOT.runDOT(r, "png", pngFile);
+	public DOTShowable snapshot() throws IOException {
+		StringBuilder dot = new StringBuilder();
+		GraphDOT.write(graph, dot, additionalHelpers);
+		int numEdges = 0;
+		for (N node : graph) {
+			numEdges += graph.getOutgoingEdges(node).size();
 		}
-		String uri = pngFile.toURI().toString();
-		a.append("<a href=\"" + uri + "\" target=\"_blank\"><img src=\"" + uri + "\"></a>");
+		return new DOTShowable(getTitle(), dot.toString(), graph.size(), numEdges);
+	}
+
+	@Override
+	public void writeHTML(Appendable a, DOTRenderPool renderPool) throws IOException {
+		snapshot().writeHTML(a, renderPool);
+	}
+
+	@Override
+	public void record(EventLog.Writer log) throws IOException {
+		snapshot().record(log);
 	}
 	
 }
@@ -0,0 +1,40 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.learnviz;
+
+import java.io.IOException;
+
+final class HTMLShowable extends Showable {
+	
+	private final String html;
+	
+	public HTMLShowable(String title, String html) {
+		super(title);
+		this.html = html;
+	}
+
+	@Override
+	public void writeHTML(Appendable a, DOTRenderPool renderPool) throws IOException {
+		a.append(html);
+	}
+
+	@Override
+	public void record(EventLog.Writer log) throws IOException {
+		log.writeHTML(getTitle(), html);
+	}
+	
+}
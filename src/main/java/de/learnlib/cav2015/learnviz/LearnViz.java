@@ -18,7 +18,10 @@ package de.learnlib.cav2015.learnviz;
 
 import java.awt.Desktop;
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -36,12 +39,12 @@ import net.automatalib.graphs.dot.EmptyDOTHelper;
 import net.automatalib.serialization.taf.parser.PrintStreamDiagnosticListener;
 import net.automatalib.serialization.taf.parser.TAFParseException;
 import net.automatalib.serialization.taf.parser.TAFParser;
-import net.automatalib.util.automata.Automata;
 import net.automatalib.words.Alphabet;
 import net.automatalib.words.Word;
 import net.automatalib.words.WordBuilder;
 
 import com.google.common.base.Objects;
+import com.google.common.html.HtmlEscapers;
 import com.misberner.clitools.api.CLITool;
 
 import de.learnlib.algorithms.discriminationtree.dfa.DTLearnerDFA;
@@ -68,6 +71,7 @@ import de.learnlib.api.LearningAlgorithm;
 import de.learnlib.api.LearningAlgorithm.DFALearner;
 import de.learnlib.api.LearningAlgorithm.MealyLearner;
 import de.learnlib.api.MembershipOracle;
+import de.learnlib.cav2015.performance.EquivalenceChecker;
 import de.learnlib.oracles.DefaultQuery;
 import de.learnlib.oracles.SimulatorOracle;
 
@@ -79,7 +83,9 @@ public class LearnViz implements CLITool {
 		@SuppressWarnings("unchecked")
 		public <I> void learn(FiniteAlphabetAutomaton<?, I, ?> target) {
 			show(new GraphShowable<>("Target system", target.graphView()));
-			JOptionPane.showMessageDialog(topFrame, "Updates will be displayed in your browser. Press OK to start the learning process");
+			if (eventLog == null) {
+				JOptionPane.showMessageDialog(topFrame, "Updates will be displayed in your browser. Press OK to start the learning process");
+			}
 			if (target instanceof MealyMachine) {
 				learnMealy((MealyMachine<?,I,?,?>) target, target.getInputAlphabet());
 			}
@@ -91,8 +97,8 @@ public class LearnViz implements CLITool {
 			}
 		}
 		
-		protected <I,D> RecordingOracle<I, D> createOracle(SuffixOutput<I, D> out) {
-			return new RecordingOracle<>(new SimulatorOracle<>(out));
+		protected <I,D> RecordingOracle<I, D> createOracle(SuffixOutput<I, D> out, Alphabet<I> alphabet) {
+			return new RecordingOracle<>(new SimulatorOracle<>(out), alphabet, queryMemory * (1024 * 1024 / 4));
 		}
 		
 		protected <I,O> void showMealyLearnerState(
@@ -134,11 +140,8 @@ public class LearnViz implements CLITool {
 			A2 extends UniversalDeterministicAutomaton<?,I,?,?,?> & SuffixOutput<I, ?>>
 		Word<I> findCounterexample(A1 hypothesis,
 				A2 target,
-				Alphabet<I> alphabet) {
-			Word<I> sepWord = Automata.findSeparatingWord(target, hypothesis, alphabet);
-			if (sepWord == null) {
-				return null;
-			}
+				Alphabet<I> alphabet,
+				Word<I> sepWord) {
 			if (interactive) {
 				Word<I> ceWord = null;
 				String ceString = null;
@@ -170,71 +173,77 @@ public class LearnViz implements CLITool {
 		}
 				
 		protected <I,O> void learnMealy(MealyMachine<?, I, ?, O> target, Alphabet<I> alphabet) {
-			RecordingOracle<I, Word<O>> oracle = createOracle(target);
+			try (RecordingOracle<I, Word<O>> oracle = createOracle(target, alphabet)) {
 			
-			LearningAlgorithm.MealyLearner<I, O> learner
-				= createMealyLearner(oracle, alphabet);
+				LearningAlgorithm.MealyLearner<I, O> learner
+					= createMealyLearner(oracle, alphabet);
 			
-			learner.startLearning();
+				learner.startLearning();
 			
-			MealyMachine<?,I,?,O> hyp = learner.getHypothesisModel();
+				MealyMachine<?,I,?,O> hyp = learner.getHypothesisModel();
 						
-			int round = 0;
+				int round = 0;
+				EquivalenceChecker<I> eqChecker = new EquivalenceChecker<>(target, alphabet);
+				Word<I> sepWord;
 			
-			while (Automata.findSeparatingWord(hyp, target, alphabet) != null) {
-				showMealyLearnerState(round, alphabet, learner, hyp, oracle);
+				while ((sepWord = eqChecker.findSeparatingWord(hyp)) != null) {
+					showMealyLearnerState(round, alphabet, learner, hyp, oracle);
 				
-				Word<I> ceWord = findCounterexample(hyp, target, alphabet);
-				if (ceWord == null) {
-					return;
-				}
+					Word<I> ceWord = findCounterexample(hyp, target, alphabet, sepWord);
+					if (ceWord == null) {
+						return;
+					}
 				
-				if (!interactive) {
-					JOptionPane.showMessageDialog(topFrame, "Finished round " + round + ", counterexample: " + ceWord);
-				}
+					if (!interactive) {
+						message("Finished round " + round + ", counterexample: " + ceWord);
+					}
 				
-				DefaultQuery<I, Word<O>> ce = new DefaultQuery<I, Word<O>>(ceWord, target.computeOutput(ceWord));
-				learner.refineHypothesis(ce);
-				hyp = learner.getHypothesisModel();
+					DefaultQuery<I, Word<O>> ce = new DefaultQuery<I, Word<O>>(ceWord, target.computeOutput(ceWord));
+					learner.refineHypothesis(ce);
+					hyp = learner.getHypothesisModel();
 				
-				round++;
-			}
+					round++;
+				}
 			
-			showMealyLearnerState(-1, alphabet, learner, hyp, oracle);
+				showMealyLearnerState(-1, alphabet, learner, hyp, oracle);
+			}
 		}
 		
 		protected <I> void learnDFA(DFA<?, I> target, Alphabet<I> alphabet) {
-			RecordingOracle<I, Boolean> oracle = createOracle(target);
+			try (RecordingOracle<I, Boolean> oracle = createOracle(target, alphabet)) {
 			
-			LearningAlgorithm.DFALearner<I> learner
-				= createDFALearner(oracle, alphabet);
+				LearningAlgorithm.DFALearner<I> learner
+					= createDFALearner(oracle, alphabet);
 			
-			learner.startLearning();
+				learner.startLearning();
 			
-			DFA<?,I> hyp = learner.getHypothesisModel();
+				DFA<?,I> hyp = learner.getHypothesisModel();
 						
-			int round = 0;
+				int round = 0;
+				EquivalenceChecker<I> eqChecker = new EquivalenceChecker<>(target, alphabet);
+				Word<I> sepWord;
 			
-			while (Automata.findSeparatingWord(target, hyp, alphabet) != null) {
-				showDFALearnerState(round, alphabet, learner, hyp, oracle);
+				while ((sepWord = eqChecker.findSeparatingWord(hyp)) != null) {
+					showDFALearnerState(round, alphabet, learner, hyp, oracle);
 				
-				Word<I> ceWord = findCounterexample(hyp, target, alphabet);
-				if (ceWord == null) {
-					return;
-				}
+					Word<I> ceWord = findCounterexample(hyp, target, alphabet, sepWord);
+					if (ceWord == null) {
+						return;
+					}
 				
-				if (!interactive) {
-					JOptionPane.showMessageDialog(topFrame, "Finished round " + round + ", counterexample: " + ceWord);
-				}
+					if (!interactive) {
+						message("Finished round " + round + ", counterexample: " + ceWord);
+					}
 				
-				DefaultQuery<I, Boolean> ce = new DefaultQuery<>(ceWord, target.computeOutput(ceWord));
-				learner.refineHypothesis(ce);
-				hyp = learner.getHypothesisModel();
+					DefaultQuery<I, Boolean> ce = new DefaultQuery<>(ceWord, target.computeOutput(ceWord));
+					learner.refineHypothesis(ce);
+					hyp = learner.getHypothesisModel();
 				
-				round++;
-			}
+					round++;
+				}
 			
-			showDFALearnerState(-1, alphabet, learner, hyp, oracle);
+				showDFALearnerState(-1, alphabet, learner, hyp, oracle);
+			}
 		}
 		
 		
@@ -406,6 +415,17 @@ public class LearnViz implements CLITool {
 	private Algo algo = null;
 	private final Map<String, Algo> algorithms = new HashMap<>();
 	private String tafFile = null;
+	private int layoutLimit = 100;
+	private int summaryLimit = 1000;
+	private int renderThreads = Runtime.getRuntime().availableProcessors();
+	private int port = -1;
+	private File cacheDir = null;
+	private DOTRenderPool renderPool = null;
+	private LiveDashboard dashboard = null;
+	private boolean pause = false;
+	private int queryMemory = 16;
+	private String recordFile = null;
+	private EventLog.Writer eventLog = null;
 	
 	public LearnViz() {
 		algorithms.put("lstar", new AlgoLStar());
@@ -432,6 +452,13 @@ public class LearnViz implements CLITool {
 		System.err.println("Possible options:");
 		System.err.println(" -i|-interactive\n   allow the user to enter counterexamples manually");
 		System.err.println(" -a|-algo <algorithm>\n   set the learning algorithm (lstar [default], rs, dt, ttt)");
+		System.err.println(" -r|-record <log-file>\n   learn without any GUI, and record all updates to the given file (see learnviz-replay)");
+		System.err.println(" -p|-port <port>\n   show all updates on a single page served at the given local port (0 for any free port)");
+		System.err.println(" -pause\n   with -port, additionally pause the learner at every message until it is confirmed");
+		System.err.println(" -query-memory <MB>\n   keep at most this many MB of queries in memory, and spill further queries to disk (default: 16)");
+		System.err.println(" -layout-limit <nodes>\n   use the faster sfdp layout for graphs with more nodes (default: 100)");
+		System.err.println(" -summary-limit <nodes>\n   do not render graphs with more nodes, only summarize them (default: 1000)");
+		System.err.println(" -render-threads <num>\n   set the number of graphs rendered in parallel (default: number of processors)");
 	}
 	
 	private void parseOptions(String[] args) {
@@ -454,6 +481,43 @@ public class LearnViz implements CLITool {
 					}
 					algoName = args[i++];
 					break;
+				case "r": case "record":
+					if (i >= args.length) {
+						System.err.println("Fatal: expecting log file name after " + arg);
+						System.exit(1);
+					}
+					recordFile = args[i++];
+					break;
+				case "p": case "port":
+					port = parseIntArg(args, i++, arg);
+					if (port < 0 || port > 65535) {
+						System.err.println("Fatal: invalid port " + port);
+						System.exit(1);
+					}
+					break;
+				case "pause":
+					pause = true;
+					break;
+				case "query-memory":
+					queryMemory = parseIntArg(args, i++, arg);
+					if (queryMemory < 1 || queryMemory > 1024) {
+						System.err.println("Fatal: query memory must be between 1 and 1024 MB");
+						System.exit(1);
+					}
+					break;
+				case "layout-limit":
+					layoutLimit = parseIntArg(args, i++, arg);
+					break;
+				case "summary-limit":
+					summaryLimit = parseIntArg(args, i++, arg);
+					break;
+				case "render-threads":
+					renderThreads = parseIntArg(args, i++, arg);
+					if (renderThreads < 1) {
+						System.err.println("Fatal: number of render threads must be positive");
+						System.exit(1);
+					}
+					break;
 				default:
 					System.err.println("Fatal: unknown option " + arg);
 					System.exit(1);
@@ -478,18 +542,55 @@ public class LearnViz implements CLITool {
 			printUsage();
 			System.exit(1);
 		}
+		if (recordFile != null && (interactive || port >= 0)) {
+			System.err.println("Fatal: recording cannot be combined with interactive mode or a port");
+			System.exit(1);
+		}
+	}
+	
+	static int parseIntArg(String[] args, int i, String option) {
+		if (i >= args.length) {
+			System.err.println("Fatal: expecting number after " + option);
+			System.exit(1);
+		}
+		try {
+			return Integer.parseInt(args[i]);
+		}
+		catch (NumberFormatException ex) {
+			System.err.println("Fatal: invalid number '" + args[i] + "' after " + option);
+			System.exit(1);
+			return -1;
+		}
 	}
 	
 	@Override
 	public boolean runMain(String[] args) {
 		parseOptions(args);
+		if (recordFile != null) {
+			return record();
+		}
 		try {
+			cacheDir = Files.createTempDirectory("learnviz").toFile();
+			renderPool = new DOTRenderPool(cacheDir, layoutLimit, summaryLimit, renderThreads);
 			FiniteAlphabetAutomaton<?, ?, ?> automaton = TAFParser.parseAny(new File(tafFile), PrintStreamDiagnosticListener.getStderrDiagnosticListener());
 			topFrame = new JFrame();
 			topFrame.setLocationRelativeTo(null);
 			topFrame.setVisible(false);
 			topFrame.setAlwaysOnTop(true);
+			if (port >= 0) {
+				dashboard = new LiveDashboard(port, cacheDir, STYLE);
+				System.err.println("Serving updates at " + dashboard.getURI());
+				if (Desktop.isDesktopSupported()) {
+					Desktop.getDesktop().browse(dashboard.getURI());
+				}
+			}
 			algo.learn(automaton);
+			renderPool.shutdown();
+			if (dashboard != null) {
+				JOptionPane.showMessageDialog(topFrame, "Learning finished. Press OK to stop serving updates");
+				dashboard.close();
+				dashboard = null;
+			}
 			topFrame.dispose();
 			topFrame = null;
 			return true;
@@ -498,6 +599,37 @@ public class LearnViz implements CLITool {
 			System.err.println("Fatal: could not parse TAF file: " + ex.getMessage());
 			return false;
 		}
+		catch (IOException ex) {
+			System.err.println("Fatal: I/O error: " + ex.getMessage());
+			return false;
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	
+	// Records the learning process without any GUI. Counterexamples are generated, and
+	// the learner never waits for the user
+	private boolean record() {
+		try (EventLog.Writer log = new EventLog.Writer(new File(recordFile))) {
+			eventLog = log;
+			FiniteAlphabetAutomaton<?, ?, ?> automaton = TAFParser.parseAny(new File(tafFile), PrintStreamDiagnosticListener.getStderrDiagnosticListener());
+			algo.learn(automaton);
+			return true;
+		}
+		catch (TAFParseException ex) {
+			System.err.println("Fatal: could not parse TAF file: " + ex.getMessage());
+			return false;
+		}
+		catch (IOException | UncheckedIOException ex) {
+			System.err.println("Fatal: could not write event log: " + ex.getMessage());
+			return false;
+		}
+		finally {
+			eventLog = null;
+		}
 	}
 	
 	
@@ -563,14 +695,14 @@ public class LearnViz implements CLITool {
 						}
 			}));
 			if (splitter.succSeparator != null) {
-				JOptionPane.showMessageDialog(topFrame, String.format("'%s'-successor of states %s and %s is "
+				message(String.format("'%s'-successor of states %s and %s is "
 						+ "separated by final discriminator %s.\nUsing %s %s to replace temporary discriminator %s",
 						symbol, splitter.state1, splitter.state2, splitter.succSeparator.getDiscriminator(),
 						symbol, splitter.discriminator,
 						blockRoot.getDiscriminator()));
 			}
 			else {
-				JOptionPane.showMessageDialog(topFrame, String.format("States %s and %s produce differing outputs "
+				message(String.format("States %s and %s produce differing outputs "
 							+ "on %s.\nUsing %s to replace temporary discriminator %s.",
 							splitter.state1, splitter.state2, symbol, symbol, blockRoot.getDiscriminator()));
 			}
@@ -626,7 +758,7 @@ public class LearnViz implements CLITool {
 						}
 						
 			}));
-			JOptionPane.showMessageDialog(topFrame, String.format("Instable hypothesis:\nState %s (access sequence %s) predicts wrong "
+			message(String.format("Instable hypothesis:\nState %s (access sequence %s) predicts wrong "
 					+ "output for suffix %s\nReal output: %s (according to discrimination tree).\nUsing "
 					+ "%s%s as counterexample.",
 					state, state.getAccessSequence(), dtNode.getDiscriminator(), realOutcome, state.getAccessSequence(), dtNode.getDiscriminator()));
@@ -673,7 +805,7 @@ public class LearnViz implements CLITool {
 						}
 						
 			}));
-			JOptionPane.showMessageDialog(topFrame, String.format("MQ([%s] %s) != MQ([%s] %s %s).\nSplitting state "
+			message(String.format("MQ([%s] %s) != MQ([%s] %s %s).\nSplitting state "
 					+ "%s, new state with access sequence %s,\nand using %s as temporary discriminator",
 					transition.getAccessSequence(), tempDiscriminator, transition.getSource().getAccessSequence(),
 					transition.getInput(), tempDiscriminator, transition.getTarget(),
@@ -686,32 +818,91 @@ public class LearnViz implements CLITool {
 	}
 	
 	
-	public static void show(Showable... showables) {
-		try {
-			File htmlFile = File.createTempFile("learnlib", ".html");
-			
-			try (PrintStream ps = new PrintStream(htmlFile)) {
-				ps.println("<html><head><style type=\"text/css\">\n"
-			+ "table.learnlib-observationtable { border-width: 1px; border: solid; }\n"
+	static final String STYLE = "table.learnlib-observationtable { border-width: 1px; border: solid; }\n"
 			+ "table.learnlib-observationtable th.suffixes-header { text-align: center; }\n"
 			+ "table.learnlib-observationtable th.prefix { vertical-align: top; }\n"
 			+ "table.learnlib-observationtable .suffix-column { text-align: left; }\n"
 			+ "table.learnlib-observationtable tr { border-width: 1px; border: solid; }\n"
-			+ "table.learnlib-observationtable tr.long-prefix { background-color: #dfdfdf; }\n"
-			+ "</style></head>\n<body><table cellspacing=\"5px\"><tr>");
-				for (Showable s : showables) {
-					ps.println("<th>" + s.getTitle() + "</th>");
-				}
-				ps.println("</tr><tr>");
-				for (Showable s : showables) {
-					ps.println("<td valign=\"top\">");
-					s.writeHTML(ps);
-					ps.println("</td>");
-				}
-				ps.println("</tr></table></body></html>");
+			+ "table.learnlib-observationtable tr.long-prefix { background-color: #dfdfdf; }\n";
+	
+	static String toHTML(DOTRenderPool renderPool, Showable... showables) throws IOException {
+		StringBuilder html = new StringBuilder();
+		html.append("<table cellspacing=\"5px\"><tr>\n");
+		for (Showable s : showables) {
+			html.append("<th>" + s.getTitle() + "</th>\n");
+		}
+		html.append("</tr><tr>\n");
+		for (Showable s : showables) {
+			html.append("<td valign=\"top\">\n");
+			s.writeHTML(html, renderPool);
+			html.append("</td>\n");
+		}
+		html.append("</tr></table>");
+		return html.toString();
+	}
+	
+	static String messageToHTML(String message) {
+		return "<p><b>" + HtmlEscapers.htmlEscaper().escape(message).replace("\n", "<br>") + "</b></p>";
+	}
+	
+	public void message(String message) {
+		if (eventLog != null) {
+			try {
+				eventLog.message(message);
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException(ex);
 			}
+			return;
+		}
+		// like updates, messages appear on the page once the preceding graphs are rendered
+		if (dashboard != null) {
+			String fragment = messageToHTML(message);
+			renderPool.whenRendered(() -> dashboard.publish(fragment));
+			if (!pause) {
+				return;
+			}
+		}
+		JOptionPane.showMessageDialog(topFrame, message);
+	}
+	
+	// The HTML is written immediately, as the showables may change afterwards. The graphs
+	// are rendered in the background, and the HTML is displayed once they are done
+	public void show(Showable... showables) {
+		if (eventLog != null) {
+			try {
+				eventLog.show(showables);
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			return;
+		}
+		try {
+			String html = toHTML(renderPool, showables);
 			
-			Desktop.getDesktop().browse(htmlFile.toURI());
+			if (dashboard != null) {
+				String fragment = html + "<hr>";
+				renderPool.whenRendered(() -> dashboard.publish(fragment));
+				return;
+			}
+			
+			// the page is stored next to the images, which it refers to by relative names
+			File htmlFile = File.createTempFile("learnlib", ".html", cacheDir);
+			try (PrintStream ps = new PrintStream(htmlFile, "UTF-8")) {
+				ps.println("<html><head><style type=\"text/css\">\n" + STYLE + "</style></head>\n<body>");
+				ps.println(html);
+				ps.println("</body></html>");
+			}
+			
+			renderPool.whenRendered(() -> {
+				try {
+					Desktop.getDesktop().browse(htmlFile.toURI());
+				}
+				catch (Exception ex) {
+					ex.printStackTrace();
+				}
+			});
 		}
 		catch(Exception ex) {
 			ex.printStackTrace();
@@ -0,0 +1,187 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.learnviz;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+
+import com.misberner.clitools.api.CLITool;
+
+public class LearnVizReplay implements CLITool {
+	
+	private String logFile = null;
+	private String outputDir = null;
+	private int port = -1;
+	private int layoutLimit = 100;
+	private int summaryLimit = 1000;
+	private int renderThreads = Runtime.getRuntime().availableProcessors();
+
+	@Override
+	public String getName() {
+		return "learnviz-replay";
+	}
+
+	@Override
+	public String getDescription() {
+		return "Visualize a learning process recorded by learnviz";
+	}
+	
+	private void printUsage() {
+		System.err.println(getName() + " - " + getDescription());
+		System.err.println("Usage:");
+		System.err.printf(" %s -h|-help\n   print this message and exit.\n", getName());
+		System.err.printf(" %s [<options>] <log-file>\n   render the session in the given event log\n", getName());
+		System.err.println("Possible options:");
+		System.err.println(" -o|-output <dir>\n   write the page and images to the given directory (default: <log-file>-replay)");
+		System.err.println(" -p|-port <port>\n   additionally serve the session at the given local port (0 for any free port)");
+		System.err.println(" -layout-limit <nodes>\n   use the faster sfdp layout for graphs with more nodes (default: 100)");
+		System.err.println(" -summary-limit <nodes>\n   do not render graphs with more nodes, only summarize them (default: 1000)");
+		System.err.println(" -render-threads <num>\n   set the number of graphs rendered in parallel (default: number of processors)");
+	}
+	
+	private void parseOptions(String[] args) {
+		int i = 0;
+		while (i < args.length) {
+			String arg = args[i++];
+			if (arg.charAt(0) == '-') {
+				switch (arg.substring(1)) {
+				case "h": case "help":
+					printUsage();
+					System.exit(0);
+				case "o": case "output":
+					if (i >= args.length) {
+						System.err.println("Fatal: expecting directory after " + arg);
+						System.exit(1);
+					}
+					outputDir = args[i++];
+					break;
+				case "p": case "port":
+					port = LearnViz.parseIntArg(args, i++, arg);
+					if (port < 0 || port > 65535) {
+						System.err.println("Fatal: invalid port " + port);
+						System.exit(1);
+					}
+					break;
+				case "layout-limit":
+					layoutLimit = LearnViz.parseIntArg(args, i++, arg);
+					break;
+				case "summary-limit":
+					summaryLimit = LearnViz.parseIntArg(args, i++, arg);
+					break;
+				case "render-threads":
+					renderThreads = LearnViz.parseIntArg(args, i++, arg);
+					if (renderThreads < 1) {
+						System.err.println("Fatal: number of render threads must be positive");
+						System.exit(1);
+					}
+					break;
+				default:
+					System.err.println("Fatal: unknown option " + arg);
+					System.exit(1);
+				}
+			}
+			else {
+				if (logFile != null) {
+					System.err.println("Fatal: expecting exactly one event log");
+					System.exit(1);
+				}
+				logFile = arg;
+			}
+		}
+		if (logFile == null) {
+			System.err.println("Fatal: no event log specified");
+			printUsage();
+			System.exit(1);
+		}
+		if (outputDir == null) {
+			outputDir = logFile + "-replay";
+		}
+	}
+
+	// The session is written to a single page, which can be viewed on another host. The
+	// graphs are rendered in the background, while the log is read
+	@Override
+	public boolean runMain(String[] args) {
+		parseOptions(args);
+		File dir = new File(outputDir);
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			System.err.println("Fatal: could not create output directory " + dir);
+			return false;
+		}
+		File htmlFile = new File(dir, "index.html");
+		DOTRenderPool renderPool = new DOTRenderPool(dir, layoutLimit, summaryLimit, renderThreads);
+		LiveDashboard dashboard = null;
+		boolean success = true;
+		try (PrintStream ps = new PrintStream(htmlFile, "UTF-8")) {
+			if (port >= 0) {
+				dashboard = new LiveDashboard(port, dir, LearnViz.STYLE);
+			}
+			LiveDashboard liveDashboard = dashboard;
+			ps.println("<html><head><style type=\"text/css\">\n" + LearnViz.STYLE + "</style></head>\n<body>");
+			EventLog.Handler handler = new EventLog.Handler() {
+				@Override
+				public void show(Showable... showables) throws IOException {
+					publish(LearnViz.toHTML(renderPool, showables) + "<hr>");
+				}
+				@Override
+				public void message(String message) {
+					publish(LearnViz.messageToHTML(message));
+				}
+				private void publish(String fragment) {
+					ps.println(fragment);
+					if (liveDashboard != null) {
+						renderPool.whenRendered(() -> liveDashboard.publish(fragment));
+					}
+				}
+			};
+			try {
+				int numEvents = EventLog.replay(new File(logFile), dir, handler);
+				System.err.println("Replayed " + numEvents + " events");
+			}
+			catch (IOException ex) {
+				System.err.println("Error: " + ex.getMessage());
+				success = false;
+			}
+			ps.println("</body></html>");
+		}
+		catch (IOException ex) {
+			System.err.println("Fatal: I/O error: " + ex.getMessage());
+			success = false;
+		}
+		try {
+			renderPool.shutdown();
+			System.err.println("Wrote " + htmlFile);
+			if (dashboard != null) {
+				System.err.println("Serving session at " + dashboard.getURI() + ", press Enter to stop");
+				new BufferedReader(new InputStreamReader(System.in)).readLine();
+				dashboard.close();
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		catch (IOException ex) {
+			System.err.println("Fatal: I/O error: " + ex.getMessage());
+			return false;
+		}
+		return success;
+	}
+}
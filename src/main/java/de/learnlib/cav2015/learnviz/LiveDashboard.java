@@ -0,0 +1,187 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.learnviz;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server showing the learning process on a single page. Each call to
+ * {@link #publish(String)} appends an HTML fragment to the page, which is pushed to
+ * all connected browsers using server-sent events. Publishing never blocks on a
+ * browser: every connection is served by its own thread, which catches up on the
+ * fragments at its own pace. The fragments may refer to files in the given directory
+ * by their (relative) name.
+ */
+final class LiveDashboard {
+	
+	private static final long KEEPALIVE_MS = 15000L;
+	
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final File filesDir;
+	private final String style;
+	
+	private final List<String> fragments = new ArrayList<>();
+	private boolean closed = false;
+	
+	public LiveDashboard(int port, File filesDir, String style) throws IOException {
+		this.filesDir = filesDir;
+		this.style = style;
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		this.executor = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "dashboard-http");
+			t.setDaemon(true);
+			return t;
+		});
+		server.setExecutor(executor);
+		server.createContext("/", this::handlePage);
+		server.createContext("/events", this::handleEvents);
+		server.createContext("/files/", this::handleFile);
+		server.start();
+	}
+	
+	public URI getURI() {
+		InetSocketAddress addr = server.getAddress();
+		return URI.create("http://" + addr.getHostString() + ":" + addr.getPort() + "/");
+	}
+	
+	public synchronized void publish(String fragment) {
+		fragments.add(fragment);
+		notifyAll();
+	}
+	
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		server.stop(0);
+		executor.shutdownNow();
+	}
+	
+	private void handlePage(HttpExchange exchange) throws IOException {
+		if (!"/".equals(exchange.getRequestURI().getPath())) {
+			sendError(exchange, 404);
+			return;
+		}
+		String page = "<html><head><title>LearnViz</title><base href=\"/files/\">"
+				+ "<style type=\"text/css\">\n" + style + "</style>\n"
+				+ "<script type=\"text/javascript\">\n"
+				+ "var source = new EventSource('/events');\n"
+				+ "source.onmessage = function(e) {\n"
+				+ "  var atBottom = (window.innerHeight + window.scrollY >= document.body.scrollHeight - 20);\n"
+				+ "  var div = document.createElement('div');\n"
+				+ "  div.innerHTML = e.data;\n"
+				+ "  document.getElementById('events').appendChild(div);\n"
+				+ "  if (atBottom) { window.scrollTo(0, document.body.scrollHeight); }\n"
+				+ "};\n"
+				+ "</script></head>\n<body><div id=\"events\"></div></body></html>\n";
+		byte[] bytes = page.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(bytes);
+		}
+	}
+	
+	// Browsers automatically reconnect to the event stream, and then report the ID of the
+	// last fragment they received
+	private void handleEvents(HttpExchange exchange) throws IOException {
+		int next = 0;
+		String lastId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+		if (lastId != null) {
+			try {
+				next = Integer.parseInt(lastId.trim()) + 1;
+			}
+			catch (NumberFormatException ex) {
+				// start from the beginning
+			}
+		}
+		exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+		exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+		exchange.sendResponseHeaders(200, 0);
+		try (Writer w = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+			while (true) {
+				List<String> pending;
+				synchronized (this) {
+					if (!closed && next >= fragments.size()) {
+						wait(KEEPALIVE_MS);
+					}
+					if (closed) {
+						return;
+					}
+					pending = new ArrayList<>(fragments.subList(Math.min(next, fragments.size()), fragments.size()));
+				}
+				if (pending.isEmpty()) {
+					// detects closed connections
+					w.write(": keepalive\n\n");
+				}
+				for (String fragment : pending) {
+					w.write("id: " + next++ + "\n");
+					for (String line : fragment.split("\n")) {
+						w.write("data: " + line + "\n");
+					}
+					w.write("\n");
+				}
+				w.flush();
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		catch (IOException ex) {
+			// the browser went away
+		}
+	}
+	
+	private void handleFile(HttpExchange exchange) throws IOException {
+		String name = exchange.getRequestURI().getPath().substring("/files/".length());
+		File file = new File(filesDir, name);
+		if (name.isEmpty() || name.contains("/") || name.startsWith(".") || !file.isFile()) {
+			sendError(exchange, 404);
+			return;
+		}
+		String contentType = name.endsWith(".png") ? "image/png"
+				: name.endsWith(".html") ? "text/html; charset=utf-8" : "text/plain; charset=utf-8";
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(200, file.length());
+		try (OutputStream os = exchange.getResponseBody()) {
+			Files.copy(file.toPath(), os);
+		}
+	}
+	
+	private static void sendError(HttpExchange exchange, int code) throws IOException {
+		exchange.sendResponseHeaders(code, -1);
+		exchange.close();
+	}
+}
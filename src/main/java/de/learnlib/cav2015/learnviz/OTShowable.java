@@ -55,9 +55,16 @@ final class OTShowable<I,D> extends Showable {
 	}
 
 	@Override
-	public void writeHTML(Appendable a) throws IOException {
+	public void writeHTML(Appendable a, DOTRenderPool renderPool) throws IOException {
 		ObservationTableHTMLWriter<I, D> writer = new ObservationTableHTMLWriter<I,D>(new WordPrinter<I>(), outWriter);
 		writer.write(ot, a);
 	}
 
+	@Override
+	public void record(EventLog.Writer log) throws IOException {
+		StringBuilder html = new StringBuilder();
+		writeHTML(html, null);
+		log.writeHTML(getTitle(), html.toString());
+	}
+
 }
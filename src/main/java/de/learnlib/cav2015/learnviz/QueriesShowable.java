@@ -16,24 +16,110 @@
  */
 package de.learnlib.cav2015.learnviz;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.List;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 
 import net.automatalib.words.Word;
 
+/**
+ * A batch of queries. The first page of queries is shown inline, further pages are
+ * written to separate files next to the rendered graphs, which are linked from the first
+ * page and from each other.
+ */
 final class QueriesShowable extends Showable {
+	
+	static final int PAGE_SIZE = 1000;
+	
+	/**
+	 * The queries of a batch as strings, which are requested in order, exactly once each.
+	 */
+	interface QuerySource {
+		String next() throws IOException;
+	}
 
-	private final List<? extends Word<?>> queries;
-	public QueriesShowable(String title, List<? extends Word<?>> queries) {
+	private final QueryLog.Batch<?> queries;
+	public QueriesShowable(String title, QueryLog.Batch<?> queries) {
 		super(title);
 		this.queries = queries;
 	}
 	@Override
-	public void writeHTML(Appendable a) throws IOException {
-		for (Word<?> q : queries) {
-			a.append(q.isEmpty() ? "&epsilon;" : q.toString()).append("<br>").append('\n');
+	public void writeHTML(Appendable a, DOTRenderPool renderPool) throws IOException {
+		Iterator<? extends Word<?>> it = queries.iterator();
+		writePages(a, renderPool.getCacheDir(), queries.size(), () -> {
+			Word<?> q = it.next();
+			return q.isEmpty() ? "" : q.toString();
+		});
+	}
+	
+	@Override
+	public void record(EventLog.Writer log) throws IOException {
+		log.writeQueries(getTitle(), queries.size(), queries);
+	}
+	
+	/**
+	 * Appends the first page of the given queries, and writes the further pages to files
+	 * in the given directory. All queries are consumed, so that only one page is in memory
+	 * at a time.
+	 */
+	static void writePages(Appendable a, File dir, int numQueries, QuerySource queries) throws IOException {
+		int shown = Math.min(numQueries, PAGE_SIZE);
+		for (int i = 0; i < shown; i++) {
+			appendQuery(a, queries.next());
+		}
+		if (numQueries <= PAGE_SIZE) {
+			return;
+		}
+		int numPages = (numQueries - 1) / PAGE_SIZE + 1;
+		// the name of the second page is unique, and the others are derived from it
+		String secondPage = File.createTempFile("queries", "-2.html", dir).getName();
+		String baseName = secondPage.substring(0, secondPage.length() - "-2.html".length());
+		a.append("<i>... and " + (numQueries - PAGE_SIZE) + " more on <a href=\"" + secondPage
+				+ "\" target=\"_blank\">" + (numPages - 1) + " further page" + (numPages > 2 ? "s" : "")
+				+ "</a></i><br>").append('\n');
+		for (int page = 2; page <= numPages; page++) {
+			int from = (page - 1) * PAGE_SIZE;
+			int to = Math.min(numQueries, from + PAGE_SIZE);
+			File file = new File(dir, pageName(baseName, page));
+			try (Writer w = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(file)), StandardCharsets.UTF_8)) {
+				String heading = "Queries " + (from + 1) + " to " + to + " of " + numQueries;
+				w.append("<html><head><title>" + heading + "</title></head>\n<body>\n");
+				w.append("<p><b>" + heading + "</b></p>\n");
+				appendNavigation(w, baseName, page, numPages);
+				for (int i = from; i < to; i++) {
+					appendQuery(w, queries.next());
+				}
+				appendNavigation(w, baseName, page, numPages);
+				w.append("</body></html>\n");
+			}
 		}
 	}
 	
+	static void appendQuery(Appendable a, String query) throws IOException {
+		a.append(query.isEmpty() ? "&epsilon;" : query).append("<br>").append('\n');
+	}
+	
+	// the first page is shown inline, so the second one has no predecessor
+	private static void appendNavigation(Appendable a, String baseName, int page, int numPages) throws IOException {
+		a.append("<p>");
+		if (page > 2) {
+			a.append("<a href=\"" + pageName(baseName, page - 1) + "\">previous</a>");
+		}
+		if (page < numPages) {
+			a.append((page > 2) ? " " : "");
+			a.append("<a href=\"" + pageName(baseName, page + 1) + "\">next</a> ");
+			a.append("<a href=\"" + pageName(baseName, numPages) + "\">last</a>");
+		}
+		a.append("</p>\n");
+	}
+	
+	private static String pageName(String baseName, int page) {
+		return baseName + "-" + page + ".html";
+	}
 	
 }
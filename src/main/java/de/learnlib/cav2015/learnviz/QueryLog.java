@@ -0,0 +1,291 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.learnviz;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import net.automatalib.words.Alphabet;
+import net.automatalib.words.Word;
+import net.automatalib.words.WordBuilder;
+
+/**
+ * A log of queries, which are stored as their length followed by the indices of their
+ * symbols in a primitive buffer. Once the buffer holds more than the configured number
+ * of ints, it is spilled to a segment file on disk. Queries are addressed by their
+ * position in the log, and ranges of queries are read back lazily, one segment at a
+ * time, such that only a single word exists at any time.
+ */
+final class QueryLog<I> implements Closeable {
+	
+	/**
+	 * A range of queries in the log.
+	 */
+	public static final class Batch<I> implements Iterable<Word<I>> {
+		
+		private final QueryLog<I> log;
+		private final long from;
+		private final long to;
+		
+		private Batch(QueryLog<I> log, long from, long to) {
+			this.log = log;
+			this.from = from;
+			this.to = to;
+		}
+		
+		public int size() {
+			return (int) (to - from);
+		}
+		
+		@Override
+		public Iterator<Word<I>> iterator() {
+			return log.iterator(from, to);
+		}
+	}
+	
+	private static final class Segment {
+		private final File file;
+		private final long firstQuery;
+		private final long numQueries;
+		
+		public Segment(File file, long firstQuery, long numQueries) {
+			this.file = file;
+			this.firstQuery = firstQuery;
+			this.numQueries = numQueries;
+		}
+	}
+	
+	private final Alphabet<I> alphabet;
+	private final int memoryInts;
+	private final List<Segment> segments = new ArrayList<>();
+	private File spillDir = null;
+	
+	private int[] buffer = new int[1024];
+	private int bufferSize = 0;
+	private long bufferStart = 0L;
+	private long numQueries = 0L;
+	private long fetched = 0L;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param alphabet the alphabet of all queries
+	 * @param memoryInts the number of ints held in memory before spilling to disk
+	 */
+	public QueryLog(Alphabet<I> alphabet, int memoryInts) {
+		this.alphabet = alphabet;
+		this.memoryInts = memoryInts;
+	}
+	
+	public void add(Word<I> query) {
+		int length = query.length();
+		ensureCapacity(bufferSize + length + 1);
+		buffer[bufferSize++] = length;
+		for (I sym : query) {
+			buffer[bufferSize++] = alphabet.getSymbolIndex(sym);
+		}
+		numQueries++;
+		if (bufferSize >= memoryInts) {
+			try {
+				spill();
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+	}
+	
+	/**
+	 * Returns all queries added since the previous call.
+	 */
+	public Batch<I> fetchNew() {
+		Batch<I> batch = new Batch<>(this, fetched, numQueries);
+		fetched = numQueries;
+		return batch;
+	}
+	
+	public long size() {
+		return numQueries;
+	}
+	
+	private void ensureCapacity(int capacity) {
+		if (capacity > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+		}
+	}
+	
+	private void spill() throws IOException {
+		if (spillDir == null) {
+			spillDir = Files.createTempDirectory("learnviz-queries").toFile();
+		}
+		File file = new File(spillDir, "segment-" + segments.size() + ".bin");
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer bytes = ByteBuffer.allocate(65536);
+			IntBuffer ints = bytes.asIntBuffer();
+			for (int pos = 0; pos < bufferSize; pos += ints.capacity()) {
+				int len = Math.min(ints.capacity(), bufferSize - pos);
+				ints.clear();
+				ints.put(buffer, pos, len);
+				bytes.clear().limit(len * 4);
+				while (bytes.hasRemaining()) {
+					channel.write(bytes);
+				}
+			}
+		}
+		segments.add(new Segment(file, bufferStart, numQueries - bufferStart));
+		bufferStart = numQueries;
+		bufferSize = 0;
+		// don't keep the buffer at its peak size
+		buffer = new int[1024];
+	}
+	
+	private Iterator<Word<I>> iterator(long from, long to) {
+		return new Iterator<Word<I>>() {
+			private long next = from;
+			private int segmentIdx = -1;
+			private DataInputStream segmentIn = null;
+			private long segmentPos = 0L;
+			// the scan position in the buffer, which is reset when the buffer is spilled
+			private long scanStart = -1L;
+			private int bufferPos;
+			private long bufferPosQuery;
+			
+			@Override
+			public boolean hasNext() {
+				return next < to;
+			}
+			
+			@Override
+			public Word<I> next() {
+				if (next >= to) {
+					throw new NoSuchElementException();
+				}
+				try {
+					return (next < bufferStart) ? readSpilled() : readBuffered();
+				}
+				catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			}
+			
+			private Word<I> readSpilled() throws IOException {
+				if (segmentIn == null || segmentPos >= segments.get(segmentIdx).firstQuery + segments.get(segmentIdx).numQueries) {
+					openSegment();
+				}
+				while (segmentPos < next) {
+					int length = segmentIn.readInt();
+					segmentIn.skipBytes(length * 4);
+					segmentPos++;
+				}
+				int length = segmentIn.readInt();
+				WordBuilder<I> wb = new WordBuilder<>(length);
+				for (int i = 0; i < length; i++) {
+					wb.add(alphabet.getSymbol(segmentIn.readInt()));
+				}
+				segmentPos++;
+				next++;
+				if (next >= to) {
+					segmentIn.close();
+				}
+				return wb.toWord();
+			}
+			
+			private void openSegment() throws IOException {
+				if (segmentIn != null) {
+					segmentIn.close();
+				}
+				segmentIdx = findSegment(next);
+				Segment segment = segments.get(segmentIdx);
+				segmentIn = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file), 65536));
+				segmentPos = segment.firstQuery;
+			}
+			
+			private Word<I> readBuffered() {
+				if (segmentIn != null) {
+					try {
+						segmentIn.close();
+					}
+					catch (IOException ex) {
+						// ignore
+					}
+					segmentIn = null;
+				}
+				if (scanStart != bufferStart) {
+					scanStart = bufferStart;
+					bufferPos = 0;
+					bufferPosQuery = bufferStart;
+				}
+				while (bufferPosQuery < next) {
+					bufferPos += buffer[bufferPos] + 1;
+					bufferPosQuery++;
+				}
+				int length = buffer[bufferPos++];
+				WordBuilder<I> wb = new WordBuilder<>(length);
+				for (int i = 0; i < length; i++) {
+					wb.add(alphabet.getSymbol(buffer[bufferPos++]));
+				}
+				bufferPosQuery++;
+				next++;
+				return wb.toWord();
+			}
+		};
+	}
+	
+	private int findSegment(long query) {
+		int lo = 0, hi = segments.size() - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (segments.get(mid).firstQuery <= query) {
+				lo = mid;
+			}
+			else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+	
+	/**
+	 * Deletes all spilled segments.
+	 */
+	@Override
+	public void close() {
+		for (Segment segment : segments) {
+			segment.file.delete();
+		}
+		segments.clear();
+		if (spillDir != null) {
+			spillDir.delete();
+			spillDir = null;
+		}
+	}
+}
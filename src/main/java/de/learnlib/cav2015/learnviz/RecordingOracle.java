@@ -16,40 +16,42 @@
  */
 package de.learnlib.cav2015.learnviz;
 
-import java.util.ArrayList;
+import java.io.Closeable;
 import java.util.Collection;
-import java.util.List;
 
-import net.automatalib.words.Word;
+import net.automatalib.words.Alphabet;
 import de.learnlib.api.MembershipOracle;
 import de.learnlib.api.Query;
 
-final class RecordingOracle<I, D> implements MembershipOracle<I, D> {
+final class RecordingOracle<I, D> implements MembershipOracle<I, D>, Closeable {
 	
 	private final MembershipOracle<I, D> delegate;
 	
-	private List<Word<I>> newQueries = new ArrayList<>();
+	private final QueryLog<I> log;
 	
-	public RecordingOracle(MembershipOracle<I, D> delegate) {
+	public RecordingOracle(MembershipOracle<I, D> delegate, Alphabet<I> alphabet, int memoryInts) {
 		this.delegate = delegate;
+		this.log = new QueryLog<>(alphabet, memoryInts);
 	}
 	
 	
-	public List<Word<I>> fetchNewQueries() {
-		List<Word<I>> result = newQueries;
-		
-		newQueries = new ArrayList<>();
-		
-		return result;
+	public QueryLog.Batch<I> fetchNewQueries() {
+		return log.fetchNew();
 	}
 
 
 	@Override
 	public void processQueries(Collection<? extends Query<I, D>> queries) {
 		for (Query<I,D> qry : queries) {
-			newQueries.add(qry.getInput());
+			log.add(qry.getInput());
 		}
 		delegate.processQueries(queries);
 	}
+
+
+	@Override
+	public void close() {
+		log.close();
+	}
 	
 }
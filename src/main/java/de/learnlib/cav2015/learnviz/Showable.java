@@ -29,5 +29,7 @@ abstract class Showable {
 		return title;
 	}
 	
-	public abstract void writeHTML(Appendable a) throws IOException;
+	public abstract void writeHTML(Appendable a, DOTRenderPool renderPool) throws IOException;
+	
+	public abstract void record(EventLog.Writer log) throws IOException;
 }
@@ -0,0 +1,78 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import de.learnlib.api.MembershipOracle;
+import de.learnlib.api.Query;
+
+/**
+ * Membership oracle that forwards queries in batches of a bounded size, and records the
+ * sizes of the forwarded batches in a {@link LatencyHistogram}. A maximum batch size of
+ * {@code 1} answers every query separately, while a maximum batch size of {@code 0} forwards
+ * every batch as is.
+ * <p>
+ * As learners expect all queries to be answered when {@code processQueries} returns, queries
+ * of different calls cannot be combined; batches posed by the learner can only be split.
+ */
+public class BatchingOracle<I,D> implements MembershipOracle<I,D> {
+	
+	private final MembershipOracle<I,D> delegate;
+	private final int maxBatchSize;
+	private final LatencyHistogram batchSizes = new LatencyHistogram();
+	
+	public BatchingOracle(MembershipOracle<I,D> delegate, int maxBatchSize) {
+		this.delegate = delegate;
+		this.maxBatchSize = maxBatchSize;
+	}
+	
+	/**
+	 * The sizes of the batches forwarded to the delegate oracle.
+	 */
+	public LatencyHistogram getBatchSizes() {
+		return batchSizes;
+	}
+
+	@Override
+	public void processQueries(Collection<? extends Query<I, D>> queries) {
+		int numQueries = queries.size();
+		if (numQueries == 0) {
+			return;
+		}
+		if (maxBatchSize <= 0 || numQueries <= maxBatchSize) {
+			batchSizes.record(numQueries);
+			delegate.processQueries(queries);
+			return;
+		}
+		List<Query<I,D>> batch = new ArrayList<>(maxBatchSize);
+		for (Query<I,D> q : queries) {
+			batch.add(q);
+			if (batch.size() == maxBatchSize) {
+				batchSizes.record(maxBatchSize);
+				delegate.processQueries(batch);
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			batchSizes.record(batch.size());
+			delegate.processQueries(batch);
+		}
+	}
+}
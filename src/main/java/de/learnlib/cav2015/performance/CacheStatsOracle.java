@@ -0,0 +1,147 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.util.Collection;
+import java.util.function.Function;
+
+import net.automatalib.words.Alphabet;
+import net.automatalib.words.Word;
+import de.learnlib.api.MembershipOracle;
+import de.learnlib.api.Query;
+import de.learnlib.cav2015.performance.RunStats.Metric;
+
+/**
+ * Membership oracle wrapper that records how effective a query cache is. It counts the
+ * queries posed to the cache and those forwarded by the cache (the misses), as well as
+ * the input symbols that the cache saved. A miss is considered a partial-prefix hit if
+ * a non-empty prefix of its input is a prefix of the input of some query forwarded
+ * before, i.e., if only the remaining symbols had to be executed on a target that can
+ * resume from known prefixes; the lengths of these prefixes are summed up as well. The
+ * whole input is considered, as caches may forward queries with a different split into
+ * prefix and suffix (e.g., the Mealy caches of LearnLib forward the whole input as the
+ * suffix). For detecting these, the inputs of all forwarded queries are stored in an
+ * additional {@link IntArrayPrefixTree}, the maintenance of which is included in the time
+ * measured for the cache.
+ */
+public class CacheStatsOracle<I,D> implements MembershipOracle<I,D> {
+	
+	private final Alphabet<I> alphabet;
+	private final MembershipOracle<I,D> cacheOracle;
+	private final PrefixTree<Void> forwarded;
+	private long queries;
+	private long symbols;
+	private long misses;
+	private long missSymbols;
+	private long partialHits;
+	private long prefixSymbols;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param alphabet the input alphabet
+	 * @param cacheFactory creates the cache for a given oracle answering its misses
+	 * @param delegate the oracle answering the misses of the cache
+	 */
+	public CacheStatsOracle(Alphabet<I> alphabet,
+			Function<? super MembershipOracle<I,D>, ? extends MembershipOracle<I,D>> cacheFactory,
+			MembershipOracle<I,D> delegate) {
+		this.alphabet = alphabet;
+		this.forwarded = new IntArrayPrefixTree<>(alphabet.size());
+		MembershipOracle<I,D> missOracle = missed -> {
+			recordMisses(missed);
+			delegate.processQueries(missed);
+		};
+		this.cacheOracle = cacheFactory.apply(missOracle);
+	}
+
+	@Override
+	public void processQueries(Collection<? extends Query<I, D>> queries) {
+		for (Query<I,D> q : queries) {
+			symbols += q.getPrefix().length() + q.getSuffix().length();
+		}
+		this.queries += queries.size();
+		cacheOracle.processQueries(queries);
+	}
+	
+	private void recordMisses(Collection<? extends Query<I,D>> missed) {
+		for (Query<I,D> q : missed) {
+			Word<I> input = q.getInput();
+			missSymbols += input.length();
+			
+			int node = forwarded.getRoot();
+			int known = 0;
+			while (known < input.length()) {
+				int child = forwarded.getChild(node, alphabet.getSymbolIndex(input.getSymbol(known)));
+				if (child < 0) {
+					break;
+				}
+				node = child;
+				known++;
+			}
+			if (known > 0) {
+				partialHits++;
+				prefixSymbols += known;
+			}
+			for (int i = known; i < input.length(); i++) {
+				node = forwarded.getOrAddChild(node, alphabet.getSymbolIndex(input.getSymbol(i)));
+			}
+		}
+		misses += missed.size();
+	}
+	
+	public long getQueries() {
+		return queries;
+	}
+	
+	public long getHits() {
+		return queries - misses;
+	}
+	
+	public long getMisses() {
+		return misses;
+	}
+	
+	public long getPartialHits() {
+		return partialHits;
+	}
+	
+	/**
+	 * The number of input symbols of the queries posed to the cache that were not
+	 * forwarded.
+	 */
+	public long getSavedSymbols() {
+		return symbols - missSymbols;
+	}
+	
+	/**
+	 * The total length of the forwarded prefixes found for the partial-prefix hits, i.e.,
+	 * the number of input symbols that a resuming target could skip.
+	 */
+	public long getPrefixSymbols() {
+		return prefixSymbols;
+	}
+	
+	public void store(RunStats stats) {
+		stats.set(Metric.CACHE_QUERIES, queries);
+		stats.set(Metric.CACHE_HITS, getHits());
+		stats.set(Metric.CACHE_MISSES, misses);
+		stats.set(Metric.CACHE_PARTIAL_HITS, partialHits);
+		stats.set(Metric.CACHE_SAVED_SYMBOLS, getSavedSymbols());
+		stats.set(Metric.CACHE_PREFIX_SYMBOLS, prefixSymbols);
+	}
+}
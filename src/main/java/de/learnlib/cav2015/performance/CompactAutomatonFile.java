@@ -0,0 +1,225 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.automatalib.automata.concepts.StateIDs;
+import net.automatalib.automata.fsa.DFA;
+import net.automatalib.automata.fsa.impl.compact.CompactDFA;
+import net.automatalib.automata.transout.MealyMachine;
+import net.automatalib.automata.transout.impl.compact.CompactMealy;
+import net.automatalib.words.Alphabet;
+
+/**
+ * A compact binary file format for DFAs and Mealy machines, which is memory-mapped
+ * and loaded without any parsing. A file consists of a header of six ints (magic, type,
+ * state count, alphabet size, initial state and output count), followed by a flat table
+ * of successors, indexed by {@code state * alphabetSize + symbol} ({@code -1} if
+ * undefined). For DFAs, the table is followed by one int per state, which is {@code 1}
+ * if the state is accepting. For Mealy machines, it is followed by a table of transition
+ * outputs in the same layout, holding the index of each output in the list of outputs.
+ * <p>
+ * As symbols and outputs are stored as indices only, the alphabet and the outputs have
+ * to be supplied when reading a file.
+ */
+public final class CompactAutomatonFile {
+	
+	private static final int MAGIC = 0x43544131; // "CTA1"
+	private static final int TYPE_DFA = 0;
+	private static final int TYPE_MEALY = 1;
+	private static final int HEADER_INTS = 6;
+	
+	private CompactAutomatonFile() {}
+	
+	public static <S,I> void writeDFA(File file, DFA<S,I> dfa, Alphabet<I> alphabet) throws IOException {
+		StateIDs<S> stateIds = dfa.stateIDs();
+		int numStates = dfa.size();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			writeHeader(out, TYPE_DFA, numStates, alphabet.size(), stateId(stateIds, dfa.getInitialState()), 0);
+			for (int i = 0; i < numStates; i++) {
+				S state = stateIds.getState(i);
+				for (I sym : alphabet) {
+					out.writeInt(stateId(stateIds, dfa.getSuccessor(state, sym)));
+				}
+			}
+			for (int i = 0; i < numStates; i++) {
+				out.writeInt(dfa.isAccepting(stateIds.getState(i)) ? 1 : 0);
+			}
+		}
+	}
+	
+	public static <S,I,T,O> void writeMealy(File file, MealyMachine<S,I,T,O> mealy, Alphabet<I> alphabet,
+			List<? extends O> outputs) throws IOException {
+		Map<O,Integer> outputCodes = new HashMap<>();
+		for (int i = 0; i < outputs.size(); i++) {
+			outputCodes.put(outputs.get(i), i);
+		}
+		StateIDs<S> stateIds = mealy.stateIDs();
+		int numStates = mealy.size();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			writeHeader(out, TYPE_MEALY, numStates, alphabet.size(), stateId(stateIds, mealy.getInitialState()),
+					outputs.size());
+			for (int i = 0; i < numStates; i++) {
+				S state = stateIds.getState(i);
+				for (I sym : alphabet) {
+					out.writeInt(stateId(stateIds, mealy.getSuccessor(state, sym)));
+				}
+			}
+			for (int i = 0; i < numStates; i++) {
+				S state = stateIds.getState(i);
+				for (I sym : alphabet) {
+					T trans = mealy.getTransition(state, sym);
+					if (trans == null) {
+						out.writeInt(-1);
+						continue;
+					}
+					Integer code = outputCodes.get(mealy.getTransitionOutput(trans));
+					if (code == null) {
+						throw new IllegalArgumentException("output " + mealy.getTransitionOutput(trans)
+								+ " is not in the list of outputs");
+					}
+					out.writeInt(code);
+				}
+			}
+		}
+	}
+	
+	private static <S> int stateId(StateIDs<S> stateIds, S state) {
+		return (state == null) ? -1 : stateIds.getStateId(state);
+	}
+	
+	private static void writeHeader(DataOutputStream out, int type, int numStates, int alphabetSize,
+			int initial, int numOutputs) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(type);
+		out.writeInt(numStates);
+		out.writeInt(alphabetSize);
+		out.writeInt(initial);
+		out.writeInt(numOutputs);
+	}
+	
+	public static <I> CompactDFA<I> readDFA(File file, Alphabet<I> alphabet) throws IOException {
+		IntBuffer buffer = map(file);
+		int numStates = checkHeader(file, buffer, TYPE_DFA, alphabet.size(), 0);
+		int numInputs = alphabet.size();
+		checkLength(file, buffer, (long) numStates * numInputs + numStates);
+		
+		CompactDFA<I> dfa = new CompactDFA<>(alphabet, numStates);
+		int accOffset = HEADER_INTS + numStates * numInputs;
+		for (int i = 0; i < numStates; i++) {
+			dfa.addIntState(buffer.get(accOffset + i) != 0);
+		}
+		int pos = HEADER_INTS;
+		for (int i = 0; i < numStates; i++) {
+			for (int j = 0; j < numInputs; j++) {
+				int succ = checkState(file, buffer.get(pos++), numStates);
+				if (succ >= 0) {
+					dfa.setTransition(i, j, succ);
+				}
+			}
+		}
+		int initial = checkState(file, buffer.get(4), numStates);
+		if (initial >= 0) {
+			dfa.setInitialState(initial);
+		}
+		return dfa;
+	}
+	
+	public static <I,O> CompactMealy<I,O> readMealy(File file, Alphabet<I> alphabet, List<? extends O> outputs)
+			throws IOException {
+		IntBuffer buffer = map(file);
+		int numStates = checkHeader(file, buffer, TYPE_MEALY, alphabet.size(), outputs.size());
+		int numInputs = alphabet.size();
+		int numOutputs = outputs.size();
+		checkLength(file, buffer, 2L * numStates * numInputs);
+		
+		CompactMealy<I,O> mealy = new CompactMealy<>(alphabet, numStates);
+		for (int i = 0; i < numStates; i++) {
+			mealy.addIntState();
+		}
+		int pos = HEADER_INTS;
+		int outPos = HEADER_INTS + numStates * numInputs;
+		for (int i = 0; i < numStates; i++) {
+			for (int j = 0; j < numInputs; j++) {
+				int succ = checkState(file, buffer.get(pos++), numStates);
+				int out = buffer.get(outPos++);
+				if (succ >= 0) {
+					if (out < 0 || out >= numOutputs) {
+						throw new IOException("Invalid output " + out + " in " + file);
+					}
+					mealy.setTransition(i, j, succ, outputs.get(out));
+				}
+			}
+		}
+		int initial = checkState(file, buffer.get(4), numStates);
+		if (initial >= 0) {
+			mealy.setInitialState(initial);
+		}
+		return mealy;
+	}
+	
+	private static IntBuffer map(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("File " + file + " exceeds the maximum size");
+			}
+			// the mapping remains valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0L, size).asIntBuffer();
+		}
+	}
+	
+	private static int checkHeader(File file, IntBuffer buffer, int type, int alphabetSize, int numOutputs)
+			throws IOException {
+		if (buffer.limit() < HEADER_INTS || buffer.get(0) != MAGIC || buffer.get(1) != type) {
+			throw new IOException("File " + file + " is not a compact " + (type == TYPE_DFA ? "DFA" : "Mealy machine"));
+		}
+		if (buffer.get(3) != alphabetSize || buffer.get(5) != numOutputs) {
+			throw new IOException("File " + file + " does not match the alphabet size " + alphabetSize
+					+ " and output count " + numOutputs);
+		}
+		int numStates = buffer.get(2);
+		if (numStates < 0) {
+			throw new IOException("Invalid state count " + numStates + " in " + file);
+		}
+		return numStates;
+	}
+	
+	private static void checkLength(File file, IntBuffer buffer, long bodyInts) throws IOException {
+		if (buffer.limit() != HEADER_INTS + bodyInts) {
+			throw new IOException("File " + file + " is truncated or has trailing data");
+		}
+	}
+	
+	private static int checkState(File file, int state, int numStates) throws IOException {
+		if (state < -1 || state >= numStates) {
+			throw new IOException("Invalid state " + state + " in " + file);
+		}
+		return state;
+	}
+}
@@ -0,0 +1,208 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.automatalib.automata.fsa.impl.compact.CompactDFA;
+import net.automatalib.automata.transout.impl.compact.CompactMealy;
+import net.automatalib.words.Alphabet;
+
+/**
+ * Generator for large random automata, which writes successors and properties into int
+ * arrays directly instead of through the generic automaton interfaces. The states are
+ * split into blocks of {@link #BLOCK_SIZE} states, which are generated concurrently, each
+ * from a source of randomness derived from the seed and the block index. Hence, the
+ * generated automaton only depends on the seed, not on the number of threads.
+ * <p>
+ * Every transition leads to a uniformly chosen state, and state {@code 0} is initial.
+ * Afterwards, the states that are not reachable from the initial state are removed, and
+ * the remaining states are numbered in breadth-first order. Unlike
+ * {@link net.automatalib.util.automata.random.RandomAutomata}, equivalent states are not
+ * merged, as minimizing large automata takes much longer than generating them, and large
+ * random automata hardly contain any equivalent states.
+ */
+public final class CompactRandomAutomata {
+	
+	/**
+	 * The number of states generated from the same source of randomness.
+	 */
+	public static final int BLOCK_SIZE = 4096;
+	
+	private static interface BlockTask {
+		void run(SplittableRandom random, int from, int to);
+	}
+	
+	private CompactRandomAutomata() {
+	}
+	
+	public static <I> CompactDFA<I> randomDFA(long seed, int numStates, Alphabet<I> alphabet, int numThreads) {
+		int alphabetSize = alphabet.size();
+		int[] successors = new int[Math.multiplyExact(numStates, alphabetSize)];
+		boolean[] accepting = new boolean[numStates];
+		forEachBlock(seed, numStates, numThreads, (random, from, to) -> {
+			for (int s = from; s < to; s++) {
+				accepting[s] = random.nextBoolean();
+				for (int i = s * alphabetSize; i < (s + 1) * alphabetSize; i++) {
+					successors[i] = random.nextInt(numStates);
+				}
+			}
+		});
+		
+		int[] newIds = new int[numStates];
+		int[] reachable = reachableStates(successors, alphabetSize, newIds);
+		CompactDFA<I> dfa = new CompactDFA<>(alphabet, reachable.length);
+		for (int oldId : reachable) {
+			dfa.addIntState(accepting[oldId]);
+		}
+		dfa.setInitialState(0);
+		forEachBlock(seed, reachable.length, numThreads, (random, from, to) -> {
+			for (int s = from; s < to; s++) {
+				int base = reachable[s] * alphabetSize;
+				for (int i = 0; i < alphabetSize; i++) {
+					dfa.setTransition(s, i, newIds[successors[base + i]]);
+				}
+			}
+		});
+		return dfa;
+	}
+	
+	public static <I,O> CompactMealy<I,O> randomMealy(long seed, int numStates, Alphabet<I> alphabet,
+			List<? extends O> outputs, int numThreads) {
+		int alphabetSize = alphabet.size();
+		int numOutputs = outputs.size();
+		int[] successors = new int[Math.multiplyExact(numStates, alphabetSize)];
+		int[] outputIdxs = new int[successors.length];
+		forEachBlock(seed, numStates, numThreads, (random, from, to) -> {
+			for (int i = from * alphabetSize; i < to * alphabetSize; i++) {
+				successors[i] = random.nextInt(numStates);
+				outputIdxs[i] = random.nextInt(numOutputs);
+			}
+		});
+		
+		int[] newIds = new int[numStates];
+		int[] reachable = reachableStates(successors, alphabetSize, newIds);
+		CompactMealy<I,O> mealy = new CompactMealy<>(alphabet, reachable.length);
+		for (int s = 0; s < reachable.length; s++) {
+			mealy.addIntState();
+		}
+		mealy.setInitialState(0);
+		forEachBlock(seed, reachable.length, numThreads, (random, from, to) -> {
+			for (int s = from; s < to; s++) {
+				int base = reachable[s] * alphabetSize;
+				for (int i = 0; i < alphabetSize; i++) {
+					mealy.setTransition(s, i, newIds[successors[base + i]], outputs.get(outputIdxs[base + i]));
+				}
+			}
+		});
+		return mealy;
+	}
+	
+	/**
+	 * Determines the states reachable from state {@code 0} in breadth-first order, and
+	 * stores the position of every state in this order in {@code newIds} ({@code -1} for
+	 * unreachable states).
+	 */
+	private static int[] reachableStates(int[] successors, int alphabetSize, int[] newIds) {
+		int[] order = new int[newIds.length];
+		for (int i = 0; i < newIds.length; i++) {
+			newIds[i] = -1;
+		}
+		newIds[0] = 0;
+		int head = 0;
+		int tail = 1;
+		while (head < tail) {
+			int base = order[head++] * alphabetSize;
+			for (int i = base; i < base + alphabetSize; i++) {
+				int succ = successors[i];
+				if (newIds[succ] < 0) {
+					newIds[succ] = tail;
+					order[tail++] = succ;
+				}
+			}
+		}
+		if (tail == order.length) {
+			return order;
+		}
+		int[] reachable = new int[tail];
+		System.arraycopy(order, 0, reachable, 0, tail);
+		return reachable;
+	}
+	
+	private static void forEachBlock(long seed, int numStates, int numThreads, BlockTask task) {
+		int numBlocks = (numStates + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		// split sequentially, as the streams of generators with nearby seeds overlap
+		SplittableRandom seedRandom = new SplittableRandom(seed);
+		SplittableRandom[] blockRandoms = new SplittableRandom[numBlocks];
+		for (int i = 0; i < numBlocks; i++) {
+			blockRandoms[i] = seedRandom.split();
+		}
+		AtomicInteger nextBlock = new AtomicInteger();
+		Runnable worker = () -> {
+			int block;
+			while ((block = nextBlock.getAndIncrement()) < numBlocks) {
+				int from = block * BLOCK_SIZE;
+				task.run(blockRandoms[block], from, Math.min(from + BLOCK_SIZE, numStates));
+			}
+		};
+		int numWorkers = Math.min(numThreads, numBlocks);
+		if (numWorkers <= 1) {
+			worker.run();
+			return;
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(numWorkers - 1, r -> {
+			Thread t = new Thread(r, "random-automata");
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			List<Future<?>> futures = new ArrayList<>(numWorkers - 1);
+			for (int i = 1; i < numWorkers; i++) {
+				futures.add(executor.submit(worker));
+			}
+			worker.run();
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while generating automaton", ex);
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException("Generating automaton failed: " + cause.getMessage(), cause);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+}
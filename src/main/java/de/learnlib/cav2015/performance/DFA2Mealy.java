@@ -16,7 +16,10 @@
  */
 package de.learnlib.cav2015.performance;
 
+import java.util.Arrays;
+
 import net.automatalib.automata.fsa.DFA;
+import net.automatalib.automata.fsa.impl.compact.CompactDFA;
 import net.automatalib.automata.transout.impl.compact.CompactMealy;
 import net.automatalib.commons.util.mappings.MutableMapping;
 import net.automatalib.util.automata.Automata;
@@ -73,6 +76,134 @@ public class DFA2Mealy {
 		return result;
 	}
 
+	/**
+	 * Converts a compact DFA by reading its int successors, without mapping or boxing any
+	 * states. The alphabet must have the same symbols in the same order as that of the DFA.
+	 * <p>
+	 * If {@code minimal} is set, the caller guarantees that the DFA is minimal. Minimality
+	 * of the DFA does not imply minimality of the Mealy machine, as the outputs of a state
+	 * only reflect the acceptance of its successors: two states differing only in their
+	 * own acceptance are equivalent in the Mealy machine. For a minimal and complete DFA,
+	 * these are exactly the states with the same successors, which are merged in a single
+	 * pass instead of minimizing the result. Partial DFAs are always minimized, and without
+	 * {@code minimal}, this is not faster than {@link #dfa2mealy(Alphabet, DFA)}.
+	 */
+	public static <I> CompactMealy<I, Boolean> dfa2mealy(Alphabet<I> alphabet, CompactDFA<I> dfa, boolean minimal) {
+		if (!hasAlphabet(dfa, alphabet)) {
+			throw new IllegalArgumentException("alphabet does not match the alphabet of the dfa");
+		}
+		int numStates = dfa.size();
+		int numInputs = alphabet.size();
+		boolean complete = true;
+		for (int state = 0; state < numStates && complete; state++) {
+			for (int i = 0; i < numInputs && complete; i++) {
+				complete = (dfa.getIntSuccessor(state, alphabet.getSymbol(i)) >= 0);
+			}
+		}
+		if (minimal && complete && dfa.getIntInitialState() >= 0) {
+			return mergeEqualSuccessors(alphabet, dfa);
+		}
+		
+		// same states and transitions as the generic conversion, the sink being added last
+		CompactMealy<I,Boolean> result = new CompactMealy<>(alphabet, numStates + 1);
+		for (int i = 0; i < numStates; i++) {
+			result.addIntState();
+		}
+		int sink = -1;
+		if (!complete) {
+			sink = result.addIntState();
+			for (int i = 0; i < numInputs; i++) {
+				result.setTransition(sink, i, sink, false);
+			}
+		}
+		int init = dfa.getIntInitialState();
+		if (init >= 0) {
+			result.setInitialState(init);
+		}
+		for (int state = 0; state < numStates; state++) {
+			for (int i = 0; i < numInputs; i++) {
+				int target = dfa.getIntSuccessor(state, alphabet.getSymbol(i));
+				if (target < 0) {
+					result.setTransition(state, i, sink, false);
+				}
+				else {
+					result.setTransition(state, i, target, dfa.isAccepting(target));
+				}
+			}
+		}
+		
+		Automata.invasiveMinimize(result, alphabet);
+		
+		return result;
+	}
+	
+	private static <I> CompactMealy<I, Boolean> mergeEqualSuccessors(Alphabet<I> alphabet, CompactDFA<I> dfa) {
+		int numStates = dfa.size();
+		int numInputs = alphabet.size();
+		int[] classOf = new int[numStates];
+		int[] representatives = new int[numStates];
+		int numClasses = 0;
+		
+		// open addressing hash table of the classes, keyed by the successors of their representative
+		int[] table = new int[Integer.highestOneBit(Math.max(2, 2 * numStates) - 1) << 1];
+		Arrays.fill(table, -1);
+		int mask = table.length - 1;
+		for (int state = 0; state < numStates; state++) {
+			int hash = 1;
+			for (int i = 0; i < numInputs; i++) {
+				hash = 31 * hash + dfa.getIntSuccessor(state, alphabet.getSymbol(i));
+			}
+			int slot = (hash ^ (hash >>> 16)) & mask;
+			int cls;
+			while ((cls = table[slot]) >= 0 && !equalSuccessors(alphabet, dfa, representatives[cls], state)) {
+				slot = (slot + 1) & mask;
+			}
+			if (cls < 0) {
+				cls = numClasses++;
+				table[slot] = cls;
+				representatives[cls] = state;
+			}
+			classOf[state] = cls;
+		}
+		
+		CompactMealy<I,Boolean> result = new CompactMealy<>(alphabet, numClasses);
+		for (int i = 0; i < numClasses; i++) {
+			result.addIntState();
+		}
+		result.setInitialState(classOf[dfa.getIntInitialState()]);
+		for (int cls = 0; cls < numClasses; cls++) {
+			int state = representatives[cls];
+			for (int i = 0; i < numInputs; i++) {
+				int target = dfa.getIntSuccessor(state, alphabet.getSymbol(i));
+				result.setTransition(cls, i, classOf[target], dfa.isAccepting(target));
+			}
+		}
+		return result;
+	}
+	
+	private static <I> boolean equalSuccessors(Alphabet<I> alphabet, CompactDFA<I> dfa, int state1, int state2) {
+		for (int i = 0; i < alphabet.size(); i++) {
+			I sym = alphabet.getSymbol(i);
+			if (dfa.getIntSuccessor(state1, sym) != dfa.getIntSuccessor(state2, sym)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean hasAlphabet(CompactDFA<?> dfa, Alphabet<?> alphabet) {
+		Alphabet<?> dfaAlphabet = dfa.getInputAlphabet();
+		if (dfaAlphabet.size() != alphabet.size()) {
+			return false;
+		}
+		for (int i = 0; i < alphabet.size(); i++) {
+			if (!dfaAlphabet.getSymbol(i).equals(alphabet.getSymbol(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	public static <I> MealyLearningExample<I, Boolean> ex2mealy(DFALearningExample<I> example) {
 		DFA<?,I> dfa = example.getReferenceAutomaton();
 		Alphabet<I> alphabet = example.getAlphabet();
@@ -80,4 +211,5 @@ public class DFA2Mealy {
 		CompactMealy<I,Boolean> mealy = dfa2mealy(alphabet, dfa);
 		return new DefaultLearningExample.DefaultMealyLearningExample<>(mealy);
 	}
+	
 }
@@ -0,0 +1,271 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.automatalib.automata.UniversalDeterministicAutomaton;
+import net.automatalib.automata.concepts.StateIDs;
+import net.automatalib.automata.fsa.impl.compact.CompactDFA;
+import net.automatalib.automata.transout.impl.compact.CompactMealy;
+import net.automatalib.automata.transout.impl.compact.CompactMealyTransition;
+import net.automatalib.words.Alphabet;
+import net.automatalib.words.Word;
+import net.automatalib.words.WordBuilder;
+
+/**
+ * Equivalence checker for a fixed target automaton, computing the same kind of separating
+ * words as {@link net.automatalib.util.automata.Automata#findSeparatingWord}. The target is
+ * converted only once into flat int arrays of successor indices and of codes for its state
+ * and transition properties (e.g., acceptance or outputs), compact automata without boxing
+ * states, while the automaton to check is explored on the fly. The check itself is the near-linear
+ * algorithm of Hopcroft and Karp, which merges the states of both automata in a union-find
+ * structure, and only explores pairs of states that have not been merged yet.
+ */
+public final class EquivalenceChecker<I> {
+	
+	private static final class Flat {
+		private final int numStates;
+		private final int initial;
+		private final int[] successors; // -1 if undefined
+		private final int[] stateCodes;
+		private final int[] transitionCodes;
+		
+		private Flat(int numStates, int initial, int alphabetSize) {
+			this.numStates = numStates;
+			this.initial = initial;
+			this.successors = new int[numStates * alphabetSize];
+			this.stateCodes = new int[numStates];
+			this.transitionCodes = new int[numStates * alphabetSize];
+		}
+	}
+	
+	private final Alphabet<I> alphabet;
+	private final int alphabetSize;
+	private final Map<Object,Integer> propertyCodes = new HashMap<>();
+	// properties are usually few shared objects, which are found faster by identity
+	private final Object[] knownProperties = new Object[16];
+	private final int[] knownCodes = new int[16];
+	private int numKnown;
+	private final Flat target;
+	
+	public EquivalenceChecker(UniversalDeterministicAutomaton<?, I, ?, ?, ?> target, Alphabet<I> alphabet) {
+		this.alphabet = alphabet;
+		this.alphabetSize = alphabet.size();
+		this.target = flatten(target);
+	}
+	
+	/**
+	 * Finds a word on which the given automaton and the target differ, i.e., a word
+	 * reaching states with different properties, or ending in transitions with different
+	 * properties.
+	 * 
+	 * @return a separating word, or {@code null} if the automata are equivalent
+	 */
+	public Word<I> findSeparatingWord(UniversalDeterministicAutomaton<?, I, ?, ?, ?> automaton) {
+		return doFindSeparatingWord(automaton);
+	}
+	
+	// the other automaton is explored on the fly, such that only the pairs of states visited
+	// by the check are ever looked at
+	private <S,T> Word<I> doFindSeparatingWord(UniversalDeterministicAutomaton<S, I, T, ?, ?> automaton) {
+		Flat a = target;
+		S otherInit = automaton.getInitialState();
+		if (a.initial < 0 || otherInit == null) {
+			return (a.initial < 0 && otherInit == null) ? null : Word.<I>epsilon();
+		}
+		if (a.stateCodes[a.initial] != code(automaton.getStateProperty(otherInit))) {
+			return Word.epsilon();
+		}
+		StateIDs<S> stateIds = automaton.stateIDs();
+		
+		// union-find over the states of both automata, those of the other one offset by a.numStates
+		int[] parent = new int[a.numStates + automaton.size()];
+		for (int i = 0; i < parent.length; i++) {
+			parent[i] = i;
+		}
+		int[] queueA = new int[16];
+		Object[] queueB = new Object[16];
+		int[] queuePred = new int[16];
+		int[] queueSym = new int[16];
+		int head = 0;
+		int tail = 0;
+		
+		parent[a.numStates + stateIds.getStateId(otherInit)] = a.initial;
+		queueA[0] = a.initial;
+		queueB[0] = otherInit;
+		queuePred[0] = -1;
+		queueSym[0] = -1;
+		tail++;
+		
+		while (head < tail) {
+			int idx = head++;
+			int baseA = queueA[idx] * alphabetSize;
+			@SuppressWarnings("unchecked")
+			S stateB = (S) queueB[idx];
+			for (int sym = 0; sym < alphabetSize; sym++) {
+				int succA = a.successors[baseA + sym];
+				T transB = automaton.getTransition(stateB, alphabet.getSymbol(sym));
+				if (succA < 0 || transB == null) {
+					if (succA >= 0 || transB != null) {
+						return buildWord(queuePred, queueSym, idx, sym);
+					}
+					continue;
+				}
+				if (a.transitionCodes[baseA + sym] != code(automaton.getTransitionProperty(transB))) {
+					return buildWord(queuePred, queueSym, idx, sym);
+				}
+				S succB = automaton.getSuccessor(transB);
+				int rootA = find(parent, succA);
+				int rootB = find(parent, a.numStates + stateIds.getStateId(succB));
+				if (rootA == rootB) {
+					continue;
+				}
+				if (a.stateCodes[succA] != code(automaton.getStateProperty(succB))) {
+					return buildWord(queuePred, queueSym, idx, sym);
+				}
+				parent[rootB] = rootA;
+				if (tail == queueA.length) {
+					int newLength = tail * 2;
+					queueA = Arrays.copyOf(queueA, newLength);
+					queueB = Arrays.copyOf(queueB, newLength);
+					queuePred = Arrays.copyOf(queuePred, newLength);
+					queueSym = Arrays.copyOf(queueSym, newLength);
+				}
+				queueA[tail] = succA;
+				queueB[tail] = succB;
+				queuePred[tail] = idx;
+				queueSym[tail] = sym;
+				tail++;
+			}
+		}
+		return null;
+	}
+	
+	private static int find(int[] parent, int x) {
+		while (parent[x] != x) {
+			parent[x] = parent[parent[x]];
+			x = parent[x];
+		}
+		return x;
+	}
+	
+	private Word<I> buildWord(int[] queuePred, int[] queueSym, int idx, int lastSym) {
+		int length = 1;
+		for (int i = idx; queuePred[i] >= 0; i = queuePred[i]) {
+			length++;
+		}
+		int[] syms = new int[length];
+		syms[length - 1] = lastSym;
+		int pos = length - 2;
+		for (int i = idx; queuePred[i] >= 0; i = queuePred[i]) {
+			syms[pos--] = queueSym[i];
+		}
+		WordBuilder<I> wb = new WordBuilder<>(length);
+		for (int sym : syms) {
+			wb.append(alphabet.getSymbol(sym));
+		}
+		return wb.toWord();
+	}
+	
+	private int code(Object property) {
+		for (int i = 0; i < numKnown; i++) {
+			if (knownProperties[i] == property) {
+				return knownCodes[i];
+			}
+		}
+		Integer code = propertyCodes.get(property);
+		if (code == null) {
+			code = propertyCodes.size();
+			propertyCodes.put(property, code);
+		}
+		if (numKnown < knownProperties.length) {
+			knownProperties[numKnown] = property;
+			knownCodes[numKnown++] = code;
+		}
+		return code;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Flat flatten(UniversalDeterministicAutomaton<?, I, ?, ?, ?> automaton) {
+		if (automaton instanceof CompactDFA) {
+			return flattenCompactDFA((CompactDFA<I>) automaton);
+		}
+		if (automaton instanceof CompactMealy) {
+			return flattenCompactMealy((CompactMealy<I,?>) automaton);
+		}
+		return flattenGeneric(automaton);
+	}
+	
+	private Flat flattenCompactDFA(CompactDFA<I> dfa) {
+		int acceptingCode = code(Boolean.TRUE);
+		int rejectingCode = code(Boolean.FALSE);
+		int transitionCode = code(null);
+		Flat flat = new Flat(dfa.size(), dfa.getIntInitialState(), alphabetSize);
+		for (int s = 0; s < flat.numStates; s++) {
+			flat.stateCodes[s] = dfa.isAccepting(s) ? acceptingCode : rejectingCode;
+			int base = s * alphabetSize;
+			for (int i = 0; i < alphabetSize; i++) {
+				flat.successors[base + i] = dfa.getIntSuccessor(s, alphabet.getSymbol(i));
+				flat.transitionCodes[base + i] = transitionCode;
+			}
+		}
+		return flat;
+	}
+	
+	private <O> Flat flattenCompactMealy(CompactMealy<I,O> mealy) {
+		int stateCode = code(null);
+		Flat flat = new Flat(mealy.size(), mealy.getIntInitialState(), alphabetSize);
+		for (int s = 0; s < flat.numStates; s++) {
+			flat.stateCodes[s] = stateCode;
+			int base = s * alphabetSize;
+			for (int i = 0; i < alphabetSize; i++) {
+				CompactMealyTransition<O> trans = mealy.getTransition(s, i);
+				if (trans == null) {
+					flat.successors[base + i] = -1;
+					continue;
+				}
+				flat.successors[base + i] = mealy.getIntSuccessor(trans);
+				flat.transitionCodes[base + i] = code(mealy.getTransitionOutput(trans));
+			}
+		}
+		return flat;
+	}
+	
+	private <S,T> Flat flattenGeneric(UniversalDeterministicAutomaton<S, I, T, ?, ?> automaton) {
+		StateIDs<S> stateIds = automaton.stateIDs();
+		S init = automaton.getInitialState();
+		Flat flat = new Flat(automaton.size(), (init == null) ? -1 : stateIds.getStateId(init), alphabetSize);
+		for (int s = 0; s < flat.numStates; s++) {
+			S state = stateIds.getState(s);
+			flat.stateCodes[s] = code(automaton.getStateProperty(state));
+			int base = s * alphabetSize;
+			for (int i = 0; i < alphabetSize; i++) {
+				T trans = automaton.getTransition(state, alphabet.getSymbol(i));
+				if (trans == null) {
+					flat.successors[base + i] = -1;
+					continue;
+				}
+				flat.successors[base + i] = stateIds.getStateId(automaton.getSuccessor(trans));
+				flat.transitionCodes[base + i] = code(automaton.getTransitionProperty(trans));
+			}
+		}
+		return flat;
+	}
+}
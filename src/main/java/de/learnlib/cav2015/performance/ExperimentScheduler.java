@@ -0,0 +1,85 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+
+/**
+ * Runs the independent cells of an experiment sweep on a pool of worker threads.
+ * Results are retrieved via {@link #await(Future)} in submission order, so that
+ * output files are written in the same, deterministic order regardless of the
+ * degree of parallelism.
+ * <p>
+ * With a single worker, no threads are created at all: each cell is executed lazily
+ * on the calling thread when its result is requested, which reproduces the original
+ * sequential behavior.
+ */
+public class ExperimentScheduler implements AutoCloseable {
+	
+	private final ExecutorService executor;
+	
+	public ExperimentScheduler(int numThreads) {
+		this.executor = (numThreads > 1) ? Executors.newFixedThreadPool(numThreads) : null;
+	}
+	
+	public boolean isSequential() {
+		return executor == null;
+	}
+	
+	public <T> Future<T> submit(Callable<T> cell) {
+		if (executor == null) {
+			return new FutureTask<>(cell);
+		}
+		return executor.submit(cell);
+	}
+	
+	public <T> T await(Future<T> result) {
+		if (executor == null && result instanceof RunnableFuture) {
+			((RunnableFuture<T>) result).run();
+		}
+		try {
+			return result.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for experiment results", ex);
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException("Experiment failed: " + cause.getMessage(), cause);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+}
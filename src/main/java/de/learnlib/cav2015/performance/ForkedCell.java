@@ -0,0 +1,164 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a single (example, learner, library) cell of a performance experiment in a
+ * freshly started child JVM. The child is started with the same JVM options and class
+ * path as the current JVM, and reports its measurements as marked lines on its
+ * standard output.
+ */
+public class ForkedCell {
+	
+	private static final String RESULT_MARKER = "#cell-result ";
+	private static final String ROUND_MARKER = "#cell-round ";
+	
+	public static RunStats run(String toolName, String exampleName, String learnerName, Library library,
+			OracleOptions options) {
+		List<String> command = new ArrayList<>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+		for (String jvmArg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			// a second debugger agent would fail to bind to the same port
+			if (!jvmArg.startsWith("-agentlib:jdwp") && !jvmArg.startsWith("-Xrunjdwp")) {
+				command.add(jvmArg);
+			}
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(ForkedCell.class.getName());
+		command.add(toolName);
+		command.add(exampleName);
+		command.add(learnerName);
+		command.add(library.getName());
+		command.addAll(options.toArgs());
+		
+		ProcessBuilder pb = new ProcessBuilder(command);
+		pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+		
+		String cell = toolName + " " + exampleName + " " + learnerName + " " + library;
+		RunStats result = null;
+		List<RunStats.Round> rounds = new ArrayList<>();
+		int exitCode;
+		try {
+			Process process = pb.start();
+			process.getOutputStream().close();
+			try (BufferedReader r = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+				String line;
+				while ((line = r.readLine()) != null) {
+					if (line.startsWith(RESULT_MARKER)) {
+						result = RunStats.parse(line.substring(RESULT_MARKER.length()));
+					}
+					else if (line.startsWith(ROUND_MARKER)) {
+						rounds.add(RunStats.Round.parse(line.substring(ROUND_MARKER.length())));
+					}
+					else {
+						System.err.println("[" + cell + "] " + line);
+					}
+				}
+			}
+			exitCode = process.waitFor();
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Could not run forked JVM for " + cell, ex);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for forked JVM for " + cell, ex);
+		}
+		
+		if (exitCode != 0 || result == null) {
+			throw new IllegalStateException("Forked JVM for " + cell + " failed (exit code " + exitCode + ")");
+		}
+		for (RunStats.Round round : rounds) {
+			result.addRound(round);
+		}
+		return result;
+	}
+	
+	private static RunStats runCell(String toolName, String exampleName, String learnerName, Library library,
+			OracleOptions options) {
+		switch (toolName) {
+		case JLearnExamples.TOOL_NAME:
+			return JLearnExamples.runSingle(exampleName,
+					checkExample(JLearnExamples.getExample(exampleName, options.getTargetCache()), exampleName),
+					checkLearner(JLearn.getLearner(learnerName), learnerName),
+					library, options);
+		case JLearnRandSeries.TOOL_NAME:
+			return JLearnRandSeries.runSingle(exampleName,
+					checkExample(JLearnRandSeries.getExample(exampleName, options.getTargetCache()), exampleName),
+					checkLearner(JLearn.getLearner(learnerName), learnerName),
+					library, options);
+		case LibAlfExamples.TOOL_NAME:
+			return LibAlfExamples.runSingle(exampleName,
+					checkExample(LibAlfExamples.getExample(exampleName), exampleName),
+					checkLearner(LibAlf.getLearner(learnerName), learnerName),
+					library, options);
+		case LibAlfRandSeries.TOOL_NAME:
+			return LibAlfRandSeries.runSingle(exampleName,
+					checkExample(LibAlfRandSeries.getExample(exampleName, options.getTargetCache()), exampleName),
+					checkLearner(LibAlf.getLearner(learnerName), learnerName),
+					library, options);
+		default:
+			throw new IllegalArgumentException("Unknown tool " + toolName);
+		}
+	}
+	
+	private static <E> E checkExample(E example, String exampleName) {
+		if (example == null) {
+			throw new IllegalArgumentException("Unknown example " + exampleName);
+		}
+		return example;
+	}
+	
+	private static <L> L checkLearner(L learner, String learnerName) {
+		if (learner == null) {
+			throw new IllegalArgumentException("Unknown learner " + learnerName);
+		}
+		return learner;
+	}
+	
+	public static void main(String[] args) {
+		if (args.length < 4) {
+			System.err.println("Usage: " + ForkedCell.class.getName() + " <tool> <example> <learner> <library> [<oracle-options...>]");
+			System.exit(2);
+		}
+		try {
+			RunStats stats = runCell(args[0], args[1], args[2], Library.fromName(args[3]),
+					OracleOptions.parse(args, 4));
+			for (RunStats.Round round : stats.getRounds()) {
+				System.out.println(ROUND_MARKER + round.format());
+			}
+			System.out.println(RESULT_MARKER + stats.format());
+			System.out.flush();
+		}
+		catch (Throwable ex) {
+			ex.printStackTrace();
+			System.exit(1);
+		}
+		// native learners may keep non-daemon threads alive
+		System.exit(0);
+	}
+}
@@ -0,0 +1,114 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link PrefixTree} stored in flat int arrays. For every node {@code n}, one array stores
+ * the code of its output ({@code 0} if unknown), and another one the index {@code r} of
+ * the row of child pointers of {@code n} ({@code 0} if {@code n} has no children). The
+ * children are stored at the indices {@code r * alphabetSize} to
+ * {@code (r + 1) * alphabetSize - 1} of a third array ({@code 0} if absent, as the root has
+ * index {@code 0}). Rows are only assigned to inner nodes, as most nodes of a query cache
+ * are leaves. Distinct outputs are stored only once.
+ */
+public final class IntArrayPrefixTree<O> implements PrefixTree<O> {
+	
+	private static final int INITIAL_CAPACITY = 64;
+	
+	private final int alphabetSize;
+	private int[] children;
+	private int[] rows;
+	private int[] outputCodes;
+	private int numNodes = 1;
+	private int numRows = 1; // row 0 is unused
+	private final List<O> outputs = new ArrayList<>();
+	private final Map<O,Integer> codes = new HashMap<>();
+	
+	public IntArrayPrefixTree(int alphabetSize) {
+		this.alphabetSize = alphabetSize;
+		this.children = new int[INITIAL_CAPACITY * alphabetSize];
+		this.rows = new int[INITIAL_CAPACITY];
+		this.outputCodes = new int[INITIAL_CAPACITY];
+	}
+
+	@Override
+	public int getRoot() {
+		return 0;
+	}
+
+	@Override
+	public int getChild(int node, int symbolIdx) {
+		int row = rows[node];
+		if (row == 0) {
+			return -1;
+		}
+		int child = children[row * alphabetSize + symbolIdx];
+		return (child == 0) ? -1 : child;
+	}
+
+	@Override
+	public int getOrAddChild(int node, int symbolIdx) {
+		int row = rows[node];
+		if (row == 0) {
+			if (numRows * alphabetSize == children.length) {
+				children = Arrays.copyOf(children, children.length * 2);
+			}
+			row = numRows++;
+			rows[node] = row;
+		}
+		int idx = row * alphabetSize + symbolIdx;
+		int child = children[idx];
+		if (child != 0) {
+			return child;
+		}
+		if (numNodes == outputCodes.length) {
+			rows = Arrays.copyOf(rows, numNodes * 2);
+			outputCodes = Arrays.copyOf(outputCodes, numNodes * 2);
+		}
+		child = numNodes++;
+		children[idx] = child;
+		return child;
+	}
+
+	@Override
+	public O getOutput(int node) {
+		int code = outputCodes[node];
+		return (code == 0) ? null : outputs.get(code - 1);
+	}
+
+	@Override
+	public void setOutput(int node, O output) {
+		Integer code = codes.get(output);
+		if (code == null) {
+			outputs.add(output);
+			code = outputs.size();
+			codes.put(output, code);
+		}
+		outputCodes[node] = code;
+	}
+
+	@Override
+	public int size() {
+		return numNodes;
+	}
+}
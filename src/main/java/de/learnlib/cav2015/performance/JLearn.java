@@ -79,6 +79,10 @@ public class JLearn {
 		return Collections.unmodifiableCollection(learners.values());
 	}
 	
+	public static Learner getLearner(String name) {
+		return learners.get(name);
+	}
+	
 	public static Collection<Learner> getLearners(Collection<? extends String> learnerNames) {
 		if (learnerNames == null) {
 			return getLearners();
@@ -20,37 +20,41 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.Locale;
-import java.util.LongSummaryStatistics;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 import net.automatalib.automata.transout.MealyMachine;
-import net.automatalib.util.automata.Automata;
 import net.automatalib.words.Alphabet;
 import net.automatalib.words.Word;
-import net.automatalib.words.impl.Alphabets;
 
 import com.misberner.clitools.api.CLITool;
 
-import de.learnlib.api.LearningAlgorithm;
 import de.learnlib.api.LearningAlgorithm.MealyLearner;
 import de.learnlib.api.MembershipOracle;
 import de.learnlib.cache.mealy.MealyCaches;
+import de.learnlib.examples.LearningExample.DFALearningExample;
 import de.learnlib.examples.LearningExample.MealyLearningExample;
 import de.learnlib.examples.dfa.DFABenchmarks;
 import de.learnlib.examples.dfa.ExampleKeylock;
-import de.learnlib.examples.mealy.ExampleRandomMealy;
-import de.learnlib.oracles.CounterOracle.MealyCounterOracle;
-import de.learnlib.oracles.DefaultQuery;
 import de.learnlib.oracles.SimulatorOracle;
 
 public class JLearnExamples implements CLITool {
 	
+	static final String TOOL_NAME = "jlearn-examples";
+	
 	@Override
 	public String getName() {
-		return "jlearn-examples";
+		return TOOL_NAME;
 	}
 	
 	@Override
@@ -58,142 +62,175 @@ public class JLearnExamples implements CLITool {
 		return "Compares the performance of LearnLib and JLearn on a series of examples";
 	}
 
-	private static final Map<String,MealyLearningExample<?,?>> mealyExamples;
+	public static final long EXAMPLES_SEED = 42L;
+	
+	private static final List<Boolean> OUTPUTS = Arrays.asList(false, true);
+	
+	private static final Map<String,Function<TargetCache,MealyLearningExample<?,?>>> mealyExamples;
 		
 	static {
-		Alphabet<Integer> a5 = Alphabets.integers(0, 4);
-		Alphabet<Integer> a10 = Alphabets.integers(0, 9);
-		Alphabet<Integer> a20 = Alphabets.integers(0, 19);
+		Random random = new Random(EXAMPLES_SEED);
 		mealyExamples = new LinkedHashMap<>();
-		mealyExamples.put("random-5-100", new ExampleRandomMealy<>(a5, 100, false, true));
-		mealyExamples.put("random-5-500", new ExampleRandomMealy<>(a5, 500, false, true));
-		mealyExamples.put("random-10-100", new ExampleRandomMealy<>(a10, 100, false, true));
-		mealyExamples.put("random-10-500", new ExampleRandomMealy<>(a10, 500, false, true));
-		mealyExamples.put("random-20-100", new ExampleRandomMealy<>(a20, 100, false, true));
-		mealyExamples.put("random-20-500", new ExampleRandomMealy<>(a20, 500, false, true));
-		mealyExamples.put("peterson2", DFA2Mealy.ex2mealy(DFABenchmarks.loadPeterson2()));
-		mealyExamples.put("keylock-5-64", DFA2Mealy.ex2mealy(new ExampleKeylock(64, false, 4)));
-		mealyExamples.put("keylockc-5-64", DFA2Mealy.ex2mealy(new ExampleKeylock(64, true, 4)));
-		mealyExamples.put("keylock-10-64", DFA2Mealy.ex2mealy(new ExampleKeylock(64, false, 9)));
-		mealyExamples.put("keylockc-10-64", DFA2Mealy.ex2mealy(new ExampleKeylock(64, true, 9)));
-		mealyExamples.put("keylock-5-128", DFA2Mealy.ex2mealy(new ExampleKeylock(128, false, 4)));
-		mealyExamples.put("keylockc-5-128", DFA2Mealy.ex2mealy(new ExampleKeylock(128, true, 4)));
-		mealyExamples.put("keylock-10-128", DFA2Mealy.ex2mealy(new ExampleKeylock(128, false, 9)));
-		mealyExamples.put("keylockc-10-128", DFA2Mealy.ex2mealy(new ExampleKeylock(128, true, 9)));
+		// The random examples share a single source of randomness, and are thus generated
+		// upfront. The conversion of the other examples is deferred until they are used.
+		putExample("random-5-100", Util.randomMealyExample(random, 5, 100));
+		putExample("random-5-500", Util.randomMealyExample(random, 5, 500));
+		putExample("random-10-100", Util.randomMealyExample(random, 10, 100));
+		putExample("random-10-500", Util.randomMealyExample(random, 10, 500));
+		putExample("random-20-100", Util.randomMealyExample(random, 20, 100));
+		putExample("random-20-500", Util.randomMealyExample(random, 20, 500));
+		mealyExamples.put("peterson2", cache -> convertExample(cache, "peterson2", DFABenchmarks.loadPeterson2()));
+		putKeylockExample("keylock-5-64", 64, false, 4);
+		putKeylockExample("keylockc-5-64", 64, true, 4);
+		putKeylockExample("keylock-10-64", 64, false, 9);
+		putKeylockExample("keylockc-10-64", 64, true, 9);
+		putKeylockExample("keylock-5-128", 128, false, 4);
+		putKeylockExample("keylockc-5-128", 128, true, 4);
+		putKeylockExample("keylock-10-128", 128, false, 9);
+		putKeylockExample("keylockc-10-128", 128, true, 9);
+	}
+	
+	private static void putExample(String name, MealyLearningExample<?,?> example) {
+		mealyExamples.put(name, cache -> example);
+	}
+	
+	private static void putKeylockExample(String name, int size, boolean cyclic, int plateau) {
+		mealyExamples.put(name, cache -> convertExample(cache, name, new ExampleKeylock(size, cyclic, plateau)));
+	}
+	
+	private static <I> MealyLearningExample<I,Boolean> convertExample(TargetCache cache, String name,
+			DFALearningExample<I> example) {
+		if (cache == null) {
+			return DFA2Mealy.ex2mealy(example);
+		}
+		return cache.getMealyExample(TOOL_NAME + "-" + name, example.getAlphabet(), OUTPUTS,
+				() -> DFA2Mealy.ex2mealy(example));
+	}
+	
+	public static Collection<String> getExampleNames() {
+		return Collections.unmodifiableSet(mealyExamples.keySet());
+	}
+	
+	public static MealyLearningExample<?,?> getExample(String name) {
+		return getExample(name, null);
+	}
+	
+	/**
+	 * Retrieves the example with the given name, loading converted targets from the given
+	 * cache (which may be {@code null}) if possible.
+	 */
+	public static MealyLearningExample<?,?> getExample(String name, TargetCache cache) {
+		Function<TargetCache,MealyLearningExample<?,?>> example = mealyExamples.get(name);
+		return (example == null) ? null : example.apply(cache);
 	}
 	
-	public static <I,O> long runLearner(MealyLearningExample<I,O> example, LearningAlgorithm<MealyMachine<?,I,?,O>, I, Word<O>> learner) {
+	private static final Library[] LIBRARIES = { Library.LEARNLIB, Library.JLEARN };
+	
+	public static <I,O> RunStats runSingle(String exampleName, MealyLearningExample<I,O> example, JLearn.Learner learnerPair,
+			Library library, OracleOptions options) {
 		MealyMachine<?,I,?,O> target = example.getReferenceAutomaton();
 		Alphabet<I> alphabet = example.getAlphabet();
 		
-		long learnerNanos = 0L;
-		long start = System.nanoTime();
-		learner.startLearning();
-		learnerNanos += System.nanoTime() - start;
-		
-		MealyMachine<?,I,?,O> hyp = learner.getHypothesisModel();
-		
-		Word<I> ceWord;
+		try (OracleChain<I, Word<O>> oracleChain = new OracleChain<>(options,
+					new SimulatorOracle.MealySimulatorOracle<>(target),
+					delegate -> new QueryStoreOracle.MealyQueryStoreOracle<>(options.getQueryStoreDir(),
+							target, alphabet, delegate))) {
+			MembershipOracle<I, Word<O>> cacheOracle = oracleChain.createCache(alphabet, options.isIntTreeCache()
+					? delegate -> new PrefixTreeOracle.MealyPrefixTreeOracle<>(new IntArrayPrefixTree<>(alphabet.size()),
+							alphabet, delegate)
+					: delegate -> MealyCaches.createTreeCache(alphabet, delegate));
+			TimedOracle<I, Word<O>> timedCacheOracle = new TimedOracle<>(cacheOracle);
+			MembershipOracle<I, Word<O>> learnerOracle = oracleChain.recordQueries(timedCacheOracle, alphabet, TOOL_NAME, exampleName, learnerPair.getName(), library);
 		
-		while ((ceWord = Automata.findSeparatingWord(target, hyp, alphabet)) != null) {
-			DefaultQuery<I, Word<O>> ceQuery = new DefaultQuery<>(ceWord, target.computeOutput(ceWord));
-			start = System.nanoTime();
-			learner.refineHypothesis(ceQuery);
-			learnerNanos += System.nanoTime() - start;
-			hyp = learner.getHypothesisModel();
+			MealyLearner<I, O> learner = (library == Library.JLEARN)
+					? learnerPair.createJLearnLearner(alphabet, learnerOracle)
+					: learnerPair.createLearnLibLearner(alphabet, learnerOracle);
+			RunStats stats = Util.runLearner(example, learner, timedCacheOracle, oracleChain.getOracle(),
+					oracleChain.createEQOracle());
+			oracleChain.store(stats);
+			return stats;
 		}
-		
-		return learnerNanos / 1000000L;
 	}
 	
+	public static <I,O> List<Future<RunStats>> scheduleExample(String exampleName, MealyLearningExample<I,O> example,
+			Collection<? extends JLearn.Learner> learners, int repeatCount, boolean fork,
+			OracleOptions options, ExperimentScheduler scheduler) {
+		List<Future<RunStats>> results = new ArrayList<>();
+		for (JLearn.Learner learnerPair : learners) {
+			for (int i = 0; i < repeatCount; i++) {
+				for (Library library : LIBRARIES) {
+					results.add(scheduler.submit(() -> {
+						if (fork) {
+							return ForkedCell.run(TOOL_NAME, exampleName, learnerPair.getName(), library, options);
+						}
+						if (scheduler.isSequential()) {
+							System.gc();
+						}
+						return runSingle(exampleName, example, learnerPair, library, options);
+					}));
+				}
+			}
+		}
+		return results;
+	}
 
 	public static <I,O> void runExample(String exampleName, MealyLearningExample<I,O> example,
-			Collection<? extends JLearn.Learner> learners, int repeatCount, PrintWriter out) {
+			Collection<? extends JLearn.Learner> learners, int repeatCount,
+			Iterator<Future<RunStats>> results, ExperimentScheduler scheduler, PrintWriter out,
+			PrintWriter roundsOut) {
 		
 		MealyMachine<?,I,?,O> target = example.getReferenceAutomaton();
 		Alphabet<I> alphabet = example.getAlphabet();
 	
 		System.out.println("Running example " + exampleName + "(" + alphabet.size() + "/" + target.size() + ")");
 		out.println("# " + exampleName + ", inputs: " + alphabet.size() + ", states: " + target.size());
-		
-		MembershipOracle.MealyMembershipOracle<I,O> directOracle
-			= new SimulatorOracle.MealySimulatorOracle<>(target);
+		out.println(RunStats.formatColumnHeader("jlearn"));
 		
 		for (JLearn.Learner learnerPair : learners) {
 			String learnerName = learnerPair.getName();
 			int learnerId = learnerPair.getId();
 
-			LongSummaryStatistics timeLearnlib = new LongSummaryStatistics();
-			LongSummaryStatistics queriesLearnlib = new LongSummaryStatistics();
-			LongSummaryStatistics timeJLearn = new LongSummaryStatistics();
-			LongSummaryStatistics queriesJLearn = new LongSummaryStatistics();
+			RunStats.Summary learnlibStats = new RunStats.Summary();
+			RunStats.Summary jlearnStats = new RunStats.Summary();
 
 			for (int i = 0; i < repeatCount; i++) {
 				System.out.print(learnerName + " #" + i + " ... ");
 				System.out.flush();
 
-				System.gc();
-
 				// LearnLib
-				{
-					MealyCounterOracle<I, O> directCounterOracle = new MealyCounterOracle<>(
-							directOracle, "MQs");
-
-					MembershipOracle.MealyMembershipOracle<I, O> cacheOracle = MealyCaches
-							.createTreeCache(alphabet, directCounterOracle);
-
-					MealyLearner<I, O> learnlibLearner = learnerPair
-							.createLearnLibLearner(alphabet, cacheOracle);
-					long learnLibMs = runLearner(example, learnlibLearner);
-					System.out.print(learnLibMs + "ms ("
-							+ directCounterOracle.getCount() + "MQs)");
-					System.out.flush();
-					timeLearnlib.accept(learnLibMs);
-					queriesLearnlib.accept(directCounterOracle.getCount());
-
-					learnlibLearner = null;
-					cacheOracle = null;
-					directCounterOracle = null;
+				RunStats learnlibRun = scheduler.await(results.next());
+				System.out.print(learnlibRun);
+				System.out.flush();
+				learnlibStats.accept(learnlibRun);
+				if (roundsOut != null) {
+					learnlibRun.printRounds(roundsOut, learnerName + " learnlib " + i);
 				}
-				System.gc();
 
 				// JLearn
-				{
-					MealyCounterOracle<I, O> jlearnCounterOracle = new MealyCounterOracle<>(
-							directOracle, "MQs");
-
-					MembershipOracle.MealyMembershipOracle<I, O> jlearnCacheOracle = MealyCaches
-							.createTreeCache(alphabet, jlearnCounterOracle);
-
-					MealyLearner<I, O> jlearnLearner = learnerPair
-							.createJLearnLearner(alphabet, jlearnCacheOracle);
-					long jlearnMs = runLearner(example, jlearnLearner);
-					System.out.println(" / " + jlearnMs + "ms ("
-							+ jlearnCounterOracle.getCount() + " MQs)");
-					timeJLearn.accept(jlearnMs);
-					queriesJLearn.accept(jlearnCounterOracle.getCount());
-
-					jlearnLearner = null;
-					jlearnCacheOracle = null;
-					jlearnCounterOracle = null;
+				RunStats jlearnRun = scheduler.await(results.next());
+				System.out.println(" / " + jlearnRun);
+				jlearnStats.accept(jlearnRun);
+				if (roundsOut != null) {
+					jlearnRun.printRounds(roundsOut, learnerName + " jlearn " + i);
 				}
-
-				System.gc();
 			}
 
-			out.println(String.format(Locale.ENGLISH, "%s %d %f %f %f %f",
-					learnerName, learnerId, timeLearnlib.getAverage(),
-					queriesLearnlib.getAverage(), timeJLearn.getAverage(),
-					queriesJLearn.getAverage()));
+			out.println(learnerName + " " + learnerId + " " + RunStats.formatColumns(learnlibStats, jlearnStats));
 
 			out.flush();
-			learnerId++;
+			if (roundsOut != null) {
+				roundsOut.flush();
+			}
 		}
 	}
 	
 	
 	private String outputDirName = null;
 	private int repeatCount = 10;
+	private int numJobs = 1;
+	private boolean fork = false;
+	private boolean timeline = false;
+	private final OracleOptions oracleOptions = new OracleOptions();
 	
 	private static final String USAGE_MSG =
 			"Usage: \n" +
@@ -202,7 +239,16 @@ public class JLearnExamples implements CLITool {
 			" {0} [<options...>] <output-dir>\n" +
 			"   Runs LearnLib and LibAlf algorithms on a set of examples.\n" +
 			"   Options can be any of:\n" +
-			"    -n|-repeat <num>    Sets the repeat count for each example (default: 10)";
+			"    -n|-repeat <num>    Sets the repeat count for each example (default: 10)\n" +
+			"    -j|-jobs <num>      Sets the number of runs executed in parallel\n" +
+			"                        (default: 1). Parallel runs compete for CPU and\n" +
+			"                        memory, and thus influence the measured times\n" +
+			"    -f|-fork            Runs every single learner run in a freshly started JVM,\n" +
+			"                        using the same JVM options as this one\n" +
+			"    -t|-timeline        Additionally writes the hypothesis size, counterexample\n" +
+			"                        length, queries and time of every learning round to\n" +
+			"                        <example>-rounds.dat files\n" +
+			OracleOptions.USAGE;
 	
 	private void printUsage() {
 		System.err.println(MessageFormat.format(USAGE_MSG, getName()));
@@ -234,7 +280,42 @@ public class JLearnExamples implements CLITool {
 						return false;
 					}
 					break;
+				case "f": case "fork":
+					this.fork = true;
+					break;
+				case "t": case "timeline":
+					this.timeline = true;
+					break;
+				case "j": case "jobs":
+					if (i == args.length) {
+						System.err.println("Error: expected argument to option " + arg);
+						return false;
+					}
+					String jstr = args[i++];
+					try {
+						this.numJobs = Integer.parseInt(jstr);
+					}
+					catch (NumberFormatException ex) {
+						System.err.println("Error: expected numeric argument to option " + arg);
+						return false;
+					}
+					if (numJobs <= 0) {
+						System.err.println("Error: argument to option " + arg + " must be positive");
+						return false;
+					}
+					break;
 				default:
+					try {
+						int next = oracleOptions.parseOption(args, i);
+						if (next >= 0) {
+							i = next;
+							break;
+						}
+					}
+					catch (IllegalArgumentException ex) {
+						System.err.println("Error: " + ex.getMessage());
+						return false;
+					}
 					System.err.println("Unknown option " + arg);
 					return false;
 				}
@@ -272,12 +353,30 @@ public class JLearnExamples implements CLITool {
 		
 		Collection<JLearn.Learner> learners = JLearn.getLearners();
 		
-		for (Map.Entry<String,MealyLearningExample<?,?>> example : mealyExamples.entrySet()) {
-			String name = example.getKey();
-			File resultsFile = new File(outputDir, "jlearn-examples-" + name + ".dat");
-			try (PrintWriter pw = new PrintWriter(resultsFile)) { 
-				runExample(example.getKey(), example.getValue(), learners, repeatCount, pw);
-				System.out.println();
+		try (ExperimentScheduler scheduler = new ExperimentScheduler(numJobs)) {
+			TargetCache targetCache = oracleOptions.getTargetCache();
+			Map<String,MealyLearningExample<?,?>> examples = new LinkedHashMap<>();
+			for (String name : mealyExamples.keySet()) {
+				examples.put(name, getExample(name, targetCache));
+			}
+			
+			Map<String,List<Future<RunStats>>> results = new HashMap<>();
+			for (Map.Entry<String,MealyLearningExample<?,?>> example : examples.entrySet()) {
+				results.put(example.getKey(), scheduleExample(example.getKey(), example.getValue(), learners, repeatCount, fork, oracleOptions, scheduler));
+			}
+			
+			for (Map.Entry<String,MealyLearningExample<?,?>> example : examples.entrySet()) {
+				String name = example.getKey();
+				File resultsFile = new File(outputDir, "jlearn-examples-" + name + ".dat");
+				File roundsFile = new File(outputDir, "jlearn-examples-" + name + "-rounds.dat");
+				try (PrintWriter pw = new PrintWriter(resultsFile);
+						PrintWriter roundsPw = timeline ? new PrintWriter(roundsFile) : null) {
+					if (roundsPw != null) {
+						roundsPw.println("# learner library repetition " + RunStats.Round.COLUMN_NAMES);
+					}
+					runExample(name, example.getValue(), learners, repeatCount, results.get(name).iterator(), scheduler, pw, roundsPw);
+					System.out.println();
+				}
 			}
 		}
 		
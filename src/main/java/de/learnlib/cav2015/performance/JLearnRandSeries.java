@@ -21,31 +21,40 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 import net.automatalib.automata.transout.MealyMachine;
 import net.automatalib.words.Alphabet;
 import net.automatalib.words.Word;
 import net.automatalib.words.impl.Alphabets;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.misberner.clitools.api.CLITool;
 
 import de.learnlib.api.LearningAlgorithm.MealyLearner;
 import de.learnlib.api.MembershipOracle;
 import de.learnlib.api.Query;
 import de.learnlib.examples.LearningExample.MealyLearningExample;
-import de.learnlib.examples.mealy.ExampleRandomMealy;
-import de.learnlib.oracles.CounterOracle.MealyCounterOracle;
 import de.learnlib.oracles.SimulatorOracle;
 
 public class JLearnRandSeries implements CLITool {
 	
 	
+	static final String TOOL_NAME = "jlearn-randseries";
+	
 	@Override
 	public String getName() {
-		return "jlearn-randseries";
+		return TOOL_NAME;
 	}
 	
 	@Override
@@ -75,17 +84,94 @@ public class JLearnRandSeries implements CLITool {
 	
 	
 	
+	public static final long SERIES_SEED = 42L;
+	
+	public static String getExampleName(boolean compact, int alphabetSize, int numStates, long seed) {
+		String name = (compact ? "compact-" : "random-") + alphabetSize + "-" + numStates;
+		return (seed == SERIES_SEED) ? name : name + "-" + seed;
+	}
+	
+	// The target of each row is seeded by its parameters, such that forked JVMs
+	// regenerate exactly the same automaton from the example name
+	public static MealyLearningExample<Integer,Boolean> getExample(String name) {
+		return getExample(name, null);
+	}
+	
+	/**
+	 * Retrieves the example with the given name, loading its target from the given cache
+	 * (which may be {@code null}) if possible.
+	 */
+	public static MealyLearningExample<Integer,Boolean> getExample(String name, TargetCache cache) {
+		String[] parts = name.split("-");
+		if ((parts.length != 3 && parts.length != 4)
+				|| !("random".equals(parts[0]) || "compact".equals(parts[0]))) {
+			return null;
+		}
+		int alphabetSize = Integer.parseInt(parts[1]);
+		int numStates = Integer.parseInt(parts[2]);
+		long seed = (parts.length == 4) ? Long.parseLong(parts[3]) : SERIES_SEED;
+		long rowSeed = seed ^ ((long) alphabetSize << 32 | numStates);
+		Supplier<MealyLearningExample<Integer,Boolean>> generator = "compact".equals(parts[0])
+				? () -> Util.compactRandomMealyExample(rowSeed, alphabetSize, numStates)
+				: () -> Util.randomMealyExample(new Random(rowSeed), alphabetSize, numStates);
+		if (cache == null) {
+			return generator.get();
+		}
+		return cache.getMealyExample(TOOL_NAME + "-" + name, Alphabets.integers(0, alphabetSize - 1),
+				Arrays.asList(false, true), generator::get);
+	}
+	
+	private static final Library[] LIBRARIES = { Library.LEARNLIB, Library.JLEARN };
+	
+	public static <I,O> RunStats runSingle(String exampleName, MealyLearningExample<I,O> example, JLearn.Learner learnerPair,
+			Library library, OracleOptions options) {
+		MealyMachine<?,I,?,O> target = example.getReferenceAutomaton();
+		Alphabet<I> alphabet = example.getAlphabet();
+		
+		try (OracleChain<I,Word<O>> oracleChain = new OracleChain<>(options,
+					new SeqOracle<>(new SimulatorOracle.MealySimulatorOracle<>(target)),
+					delegate -> new QueryStoreOracle.MealyQueryStoreOracle<>(options.getQueryStoreDir(),
+							target, alphabet, delegate))) {
+			MembershipOracle<I,Word<O>> learnerOracle = oracleChain.recordQueries(oracleChain.getOracle(), alphabet, TOOL_NAME, exampleName, learnerPair.getName(), library);
+			MealyLearner<I,O> learner = (library == Library.JLEARN)
+					? learnerPair.createJLearnLearner(alphabet, learnerOracle)
+					: learnerPair.createLearnLibLearner(alphabet, learnerOracle);
+			RunStats stats = Util.runLearner(example, learner, oracleChain.getOracle(), oracleChain.getOracle(),
+					oracleChain.createEQOracle());
+			oracleChain.store(stats);
+			return stats;
+		}
+	}
+	
+	public static <I,O> List<Future<RunStats>> scheduleExample(String exampleName, Supplier<? extends MealyLearningExample<I,O>> example,
+			Collection<? extends JLearn.Learner> learners, boolean fork, OracleOptions options,
+			ExperimentScheduler scheduler) {
+		List<Future<RunStats>> results = new ArrayList<>();
+		for (JLearn.Learner learnerPair : learners) {
+			for (Library library : LIBRARIES) {
+				results.add(scheduler.submit(() -> {
+					if (fork) {
+						return ForkedCell.run(TOOL_NAME, exampleName, learnerPair.getName(), library, options);
+					}
+					if (scheduler.isSequential()) {
+						System.gc();
+					}
+					return runSingle(exampleName, example.get(), learnerPair, library, options);
+				}));
+			}
+		}
+		return results;
+	}
+	
 	public static <I,O> void runExample(String exampleName, MealyLearningExample<I,O> example,
-			Collection<? extends JLearn.Learner> learners, PrintWriter out) {
+			Collection<? extends JLearn.Learner> learners, Iterator<Future<RunStats>> results,
+			ExperimentScheduler scheduler, PrintWriter out, PrintWriter phasesOut, PrintWriter roundsOut) {
 		
 		MealyMachine<?,I,?,O> target = example.getReferenceAutomaton();
 		Alphabet<I> alphabet = example.getAlphabet();
 	
 		System.out.println("Running example " + exampleName + "(" + alphabet.size() + "/" + target.size() + ")");
 		
-		MembershipOracle<I,Word<O>> directOracle
-			= new SeqOracle<>(new SimulatorOracle.MealySimulatorOracle<>(target));
-		
 		out.print(target.size());
 		out.print(' ');
 		
@@ -95,45 +181,40 @@ public class JLearnRandSeries implements CLITool {
 			System.out.print(learnerName + " ... ");
 			System.out.flush();
 
-			System.gc();
 			// LearnLib
-			{
-				MealyCounterOracle<I,O> directCounterOracle = new MealyCounterOracle<>(directOracle, "MQs");
-	
-				MealyLearner<I,O> learnlibLearner = learnerPair.createLearnLibLearner(alphabet,
-						directCounterOracle);
-				long learnLibMs = Util.runLearner(example, learnlibLearner);
-				System.out.print(learnLibMs + "ms (" + directCounterOracle.getCount() + "MQs)");
-				System.out.flush();
-				
-				out.print(learnLibMs);
-				out.print(' ');
-				
-				// For GC
-				learnlibLearner = null;
-				directCounterOracle = null;
+			RunStats learnlibRun = scheduler.await(results.next());
+			System.out.print(learnlibRun);
+			System.out.flush();
+			out.print(learnlibRun.getTimeMs());
+			out.print(' ');
+			phasesOut.println(target.size() + " " + learnerName + " learnlib " + learnlibRun.format(RunStats.PHASE_METRICS)
+					+ " " + learnlibRun.format(RunStats.LATENCY_METRICS) + " " + learnlibRun.format(RunStats.BATCHING_METRICS)
+					+ " " + learnlibRun.format(RunStats.STORE_METRICS) + " " + learnlibRun.format(RunStats.CACHE_METRICS)
+					+ " " + learnlibRun.format(RunStats.EQ_METRICS));
+			if (roundsOut != null) {
+				learnlibRun.printRounds(roundsOut, target.size() + " " + learnerName + " learnlib");
 			}
-			System.gc();
 			
-			// Libalf
-			{
-				MealyCounterOracle<I,O> jlearnCounterOracle = new MealyCounterOracle<>(directOracle, "MQs");
-				
-				MealyLearner<I,O> jlearnLearner = learnerPair.createJLearnLearner(alphabet, jlearnCounterOracle);
-				long jlearnMs = Util.runLearner(example, jlearnLearner);
-				System.out.println(" / " + jlearnMs + "ms (" + jlearnCounterOracle.getCount() + " MQs)");
-					
-				out.print(jlearnMs);
-				out.print(' ');
-				
-				jlearnCounterOracle = null;
-				jlearnLearner = null;
+			// JLearn
+			RunStats jlearnRun = scheduler.await(results.next());
+			System.out.println(" / " + jlearnRun);
+			out.print(jlearnRun.getTimeMs());
+			out.print(' ');
+			phasesOut.println(target.size() + " " + learnerName + " jlearn " + jlearnRun.format(RunStats.PHASE_METRICS)
+					+ " " + jlearnRun.format(RunStats.LATENCY_METRICS) + " " + jlearnRun.format(RunStats.BATCHING_METRICS)
+					+ " " + jlearnRun.format(RunStats.STORE_METRICS) + " " + jlearnRun.format(RunStats.CACHE_METRICS)
+					+ " " + jlearnRun.format(RunStats.EQ_METRICS));
+			if (roundsOut != null) {
+				jlearnRun.printRounds(roundsOut, target.size() + " " + learnerName + " jlearn");
 			}
-			System.gc();
 		}
 		
 		out.println();
 		out.flush();
+		phasesOut.flush();
+		if (roundsOut != null) {
+			roundsOut.flush();
+		}
 	}
 	
 	
@@ -143,6 +224,12 @@ public class JLearnRandSeries implements CLITool {
 	private int low = 10;
 	private int high = 1000;
 	private int step = 10;
+	private int numJobs = 1;
+	private boolean fork = false;
+	private boolean timeline = false;
+	private boolean compactGenerator = false;
+	private long seed = SERIES_SEED;
+	private final OracleOptions oracleOptions = new OracleOptions();
 	
 	private static final String USAGE_MSG =
 			"Usage: \n" +
@@ -157,7 +244,22 @@ public class JLearnRandSeries implements CLITool {
 			"    -s|-step <num>      Set the state count stepping (default: 10)\n" +
 			"    -k|-alphabet-sizes <sizes>\n" +
 			"                        Set the different alphabet sizes as a comma-separated\n" +
-			"                        list (default: 2,10,100)";
+			"                        list (default: 2,10,100)\n" +
+			"    -j|-jobs <num>      Set the number of runs executed in parallel\n" +
+			"                        (default: 1). Parallel runs compete for CPU and\n" +
+			"                        memory, and thus influence the measured times\n" +
+			"    -f|-fork            Run every single learner run in a freshly started JVM,\n" +
+			"                        using the same JVM options as this one\n" +
+			"    -t|-timeline        Additionally write the hypothesis size, counterexample\n" +
+			"                        length, queries and time of every learning round to\n" +
+			"                        -rounds.dat files\n" +
+			"    -g|-generator <gen> Generate the targets through the generic automaton\n" +
+			"                        interfaces (generic), or directly into int arrays in\n" +
+			"                        parallel, for up to millions of states (compact,\n" +
+			"                        default: generic)\n" +
+			"    -seed <num>         Set the seed from which the targets are derived\n" +
+			"                        (default: 42)\n" +
+			OracleOptions.USAGE;
 	
 	private void printUsage() {
 		System.err.println(MessageFormat.format(USAGE_MSG, getName()));
@@ -232,7 +334,78 @@ public class JLearnRandSeries implements CLITool {
 						return false;
 					}
 					break;
+				case "f": case "fork":
+					this.fork = true;
+					break;
+				case "t": case "timeline":
+					this.timeline = true;
+					break;
+				case "g": case "generator":
+					if (i == args.length) {
+						System.err.println("Error: expected argument to option " + arg);
+						return false;
+					}
+					String gstr = args[i++];
+					switch (gstr) {
+					case "generic":
+						this.compactGenerator = false;
+						break;
+					case "compact":
+						this.compactGenerator = true;
+						break;
+					default:
+						System.err.println("Error: unknown generator " + gstr);
+						return false;
+					}
+					break;
+				case "seed":
+					if (i == args.length) {
+						System.err.println("Error: expected argument to option " + arg);
+						return false;
+					}
+					String seedStr = args[i++];
+					try {
+						this.seed = Long.parseLong(seedStr);
+					}
+					catch (NumberFormatException ex) {
+						System.err.println("Error: expected numeric argument to option " + arg);
+						return false;
+					}
+					if (seed < 0L) {
+						System.err.println("Error: argument to option " + arg + " must not be negative");
+						return false;
+					}
+					break;
+				case "j": case "jobs":
+					if (i == args.length) {
+						System.err.println("Error: expected argument to option " + arg);
+						return false;
+					}
+					String jstr = args[i++];
+					try {
+						this.numJobs = Integer.parseInt(jstr);
+					}
+					catch (NumberFormatException ex) {
+						System.err.println("Error: expected numeric argument to option " + arg);
+						return false;
+					}
+					if (numJobs <= 0) {
+						System.err.println("Error: argument to option " + arg + " must be positive");
+						return false;
+					}
+					break;
 				default:
+					try {
+						int next = oracleOptions.parseOption(args, i);
+						if (next >= 0) {
+							i = next;
+							break;
+						}
+					}
+					catch (IllegalArgumentException ex) {
+						System.err.println("Error: " + ex.getMessage());
+						return false;
+					}
 					System.err.println("Unknown option " + arg);
 					return false;
 				}
@@ -270,14 +443,66 @@ public class JLearnRandSeries implements CLITool {
 		List<JLearn.Learner> learners = new ArrayList<>(JLearn.getLearners());
 		Collections.sort(learners);
 		
-		for (int alphabetSize : alphabetSizes) {
-			System.out.println("Running series for alphabet size " + alphabetSize);
-			File outFile = new File(outputDir, "jlearn-randseries-" + alphabetSize + ".dat");
-			System.out.println("Writing results to file " + outFile);
-			try (PrintWriter pw = new PrintWriter(outFile)) {
+		try (ExperimentScheduler scheduler = new ExperimentScheduler(numJobs)) {
+			Map<Integer,List<Supplier<MealyLearningExample<Integer,Boolean>>>> examples = new HashMap<>();
+			Map<Integer,List<List<Future<RunStats>>>> results = new HashMap<>();
+			Map<String,Long> generationMillis = new ConcurrentHashMap<>();
+			TargetCache targetCache = oracleOptions.getTargetCache();
+			for (int alphabetSize : alphabetSizes) {
+				List<Supplier<MealyLearningExample<Integer,Boolean>>> seriesExamples = new ArrayList<>();
+				List<List<Future<RunStats>>> seriesResults = new ArrayList<>();
 				for (int numStates = low; numStates < high; numStates += step) {
-					MealyLearningExample<Integer,Boolean> example = new ExampleRandomMealy<>(Alphabets.integers(0, alphabetSize - 1), numStates, false, true);;
-					runExample("random-" + alphabetSize + "-" + numStates, example, learners, pw);
+					String exampleName = getExampleName(compactGenerator, alphabetSize, numStates, seed);
+					// generated once, by whichever run of this row comes first
+					Supplier<MealyLearningExample<Integer,Boolean>> example = Suppliers.memoize(() -> {
+						long start = System.nanoTime();
+						MealyLearningExample<Integer,Boolean> result = getExample(exampleName, targetCache);
+						generationMillis.put(exampleName, (System.nanoTime() - start) / 1000000L);
+						return result;
+					});
+					seriesExamples.add(example);
+					seriesResults.add(scheduleExample(exampleName, example, learners, fork, oracleOptions, scheduler));
+				}
+				examples.put(alphabetSize, seriesExamples);
+				results.put(alphabetSize, seriesResults);
+			}
+			
+			for (int alphabetSize : alphabetSizes) {
+				System.out.println("Running series for alphabet size " + alphabetSize);
+				File outFile = new File(outputDir, "jlearn-randseries-" + alphabetSize + ".dat");
+				File phasesFile = new File(outputDir, "jlearn-randphases-" + alphabetSize + ".dat");
+				System.out.println("Writing results to files " + outFile + " and " + phasesFile);
+				// rows are dropped once written, so that their targets can be collected
+				Iterator<Supplier<MealyLearningExample<Integer,Boolean>>> seriesExamples = examples.get(alphabetSize).iterator();
+				Iterator<List<Future<RunStats>>> seriesResults = results.get(alphabetSize).iterator();
+				File roundsFile = new File(outputDir, "jlearn-randseries-" + alphabetSize + "-rounds.dat");
+				File generationFile = new File(outputDir, "jlearn-randgen-" + alphabetSize + ".dat");
+				try (PrintWriter pw = new PrintWriter(outFile);
+						PrintWriter phasesPw = new PrintWriter(phasesFile);
+						PrintWriter generationPw = new PrintWriter(generationFile);
+						PrintWriter roundsPw = timeline ? new PrintWriter(roundsFile) : null) {
+					phasesPw.println("# states learner library " + RunStats.formatColumnNames(RunStats.PHASE_METRICS)
+							+ " " + RunStats.formatColumnNames(RunStats.LATENCY_METRICS)
+							+ " " + RunStats.formatColumnNames(RunStats.BATCHING_METRICS)
+							+ " " + RunStats.formatColumnNames(RunStats.STORE_METRICS)
+							+ " " + RunStats.formatColumnNames(RunStats.CACHE_METRICS)
+							+ " " + RunStats.formatColumnNames(RunStats.EQ_METRICS));
+					if (roundsPw != null) {
+						roundsPw.println("# states learner library " + RunStats.Round.COLUMN_NAMES);
+					}
+					generationPw.println("# requested-states states gen-ms");
+					for (int numStates = low; numStates < high; numStates += step) {
+						String exampleName = getExampleName(compactGenerator, alphabetSize, numStates, seed);
+						MealyLearningExample<Integer,Boolean> example = seriesExamples.next().get();
+						seriesExamples.remove();
+						long genMs = generationMillis.get(exampleName);
+						System.out.println("Generated example " + exampleName + " in " + genMs + "ms");
+						generationPw.println(numStates + " " + example.getReferenceAutomaton().size() + " " + genMs);
+						generationPw.flush();
+						runExample(exampleName, example, learners,
+								seriesResults.next().iterator(), scheduler, pw, phasesPw, roundsPw);
+						seriesResults.remove();
+					}
 				}
 			}
 		}
@@ -0,0 +1,109 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+/**
+ * Fixed-memory histogram of non-negative {@code long} values (such as latencies in
+ * nanoseconds), in the spirit of HdrHistogram: values are recorded into log-linear
+ * buckets with a relative error of less than 1/64 (about 1.6%), using a single counter
+ * array that is allocated upfront. Recording a value never allocates.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class LatencyHistogram {
+	
+	// 2^7 = 128 sub-buckets per bucket, i.e., a precision of 1/64 within each power of two
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+	private static final int NUM_COUNTS
+		= (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+	
+	private final long[] counts = new long[NUM_COUNTS];
+	private long totalCount;
+	private long max;
+	
+	public void record(long value) {
+		if (value < 0L) {
+			value = 0L;
+		}
+		counts[indexOf(value)]++;
+		totalCount++;
+		if (value > max) {
+			max = value;
+		}
+	}
+	
+	/**
+	 * Adds all values recorded by the given histogram to this histogram.
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		totalCount += other.totalCount;
+		if (other.max > max) {
+			max = other.max;
+		}
+	}
+	
+	public long getTotalCount() {
+		return totalCount;
+	}
+	
+	public long getMax() {
+		return max;
+	}
+	
+	/**
+	 * Retrieves the value below or at which the given percentage of all recorded values
+	 * lie, or {@code 0} if no values have been recorded. This is the highest value of the
+	 * bucket containing it, which may exceed it by less than 1/64.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (totalCount == 0L) {
+			return 0L;
+		}
+		long threshold = Math.max(1L, (long) Math.ceil(percentile / 100.0 * totalCount));
+		long cumulative = 0L;
+		for (int i = 0; i < counts.length; i++) {
+			cumulative += counts[i];
+			if (cumulative >= threshold) {
+				return Math.min(highestValueAt(i), max);
+			}
+		}
+		return max;
+	}
+	
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int bucket = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS + 1;
+		int subBucket = (int) (value >>> bucket);
+		return bucket * SUB_BUCKET_HALF_COUNT + subBucket;
+	}
+	
+	private static long highestValueAt(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int bucket = index / SUB_BUCKET_HALF_COUNT - 1;
+		long subBucket = index - bucket * SUB_BUCKET_HALF_COUNT;
+		return (subBucket << bucket) + ((1L << bucket) - 1L);
+	}
+}
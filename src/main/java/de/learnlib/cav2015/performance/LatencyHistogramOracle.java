@@ -0,0 +1,76 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import de.learnlib.api.MembershipOracle;
+import de.learnlib.api.Query;
+
+/**
+ * Membership oracle wrapper that records the latency of every single query and/or of every
+ * batch in a {@link LatencyHistogram}. To measure single queries, they are passed to the
+ * delegate one at a time; a wrapper recording single queries should therefore be placed
+ * directly in front of the system under learning (or its simulation), which answers queries
+ * one by one anyway.
+ */
+public class LatencyHistogramOracle<I,D> implements MembershipOracle<I,D> {
+	
+	private final MembershipOracle<I,D> delegate;
+	private final LatencyHistogram queryLatencies;
+	private final LatencyHistogram batchLatencies;
+	private final List<Query<I,D>> singleQuery = new ArrayList<>(1);
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param delegate the oracle answering the queries
+	 * @param queryLatencies the histogram for the latencies of single queries, or
+	 * {@code null} if these should not be recorded
+	 * @param batchLatencies the histogram for the latencies of batches, or {@code null}
+	 * if these should not be recorded
+	 */
+	public LatencyHistogramOracle(MembershipOracle<I,D> delegate, LatencyHistogram queryLatencies,
+			LatencyHistogram batchLatencies) {
+		this.delegate = delegate;
+		this.queryLatencies = queryLatencies;
+		this.batchLatencies = batchLatencies;
+		this.singleQuery.add(null);
+	}
+
+	@Override
+	public void processQueries(Collection<? extends Query<I, D>> queries) {
+		long batchStart = System.nanoTime();
+		if (queryLatencies != null) {
+			for (Query<I,D> q : queries) {
+				singleQuery.set(0, q);
+				long start = System.nanoTime();
+				delegate.processQueries(singleQuery);
+				queryLatencies.record(System.nanoTime() - start);
+			}
+			singleQuery.set(0, null);
+		}
+		else {
+			delegate.processQueries(queries);
+		}
+		if (batchLatencies != null) {
+			batchLatencies.record(System.nanoTime() - batchStart);
+		}
+	}
+}
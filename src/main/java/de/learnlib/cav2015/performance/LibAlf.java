@@ -74,6 +74,10 @@ public class LibAlf {
 		return Collections.unmodifiableCollection(learners.values());
 	}
 	
+	public static Learner getLearner(String name) {
+		return learners.get(name);
+	}
+	
 	public static Collection<Learner> getLearners(Collection<? extends String> names) {
 		if (names == null) {
 			return getLearners();
@@ -20,11 +20,16 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.Locale;
-import java.util.LongSummaryStatistics;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Future;
 
 import net.automatalib.automata.fsa.DFA;
 import net.automatalib.words.Alphabet;
@@ -37,24 +42,25 @@ import de.learnlib.cache.dfa.DFACaches;
 import de.learnlib.examples.LearningExample.DFALearningExample;
 import de.learnlib.examples.dfa.DFABenchmarks;
 import de.learnlib.examples.dfa.ExampleKeylock;
-import de.learnlib.examples.dfa.ExampleRandomDFA;
 import de.learnlib.libalf.LibalfActiveDFALearner;
-import de.learnlib.oracles.CounterOracle.DFACounterOracle;
 import de.learnlib.oracles.SimulatorOracle;
 
 public class LibAlfExamples implements CLITool {
 	
 	
+	public static final long EXAMPLES_SEED = 42L;
+	
 	private static final Map<String,DFALearningExample<?>> dfaExamples;
 	
 	static {
 		dfaExamples = new LinkedHashMap<>();
 	
+		Random random = new Random(EXAMPLES_SEED);
 		int[] alphabetSizes = { 5, 10, 20 };
 		int[] stateCounts = { 100, 500 };
 		for (int alphabetSize : alphabetSizes) {
 			for (int stateCount : stateCounts) {
-				dfaExamples.put("random-" + alphabetSize + "-" + stateCount, new ExampleRandomDFA(alphabetSize, stateCount));
+				dfaExamples.put("random-" + alphabetSize + "-" + stateCount, Util.randomDFAExample(random, alphabetSize, stateCount));
 			}
 		}
 		dfaExamples.put("peterson2", DFABenchmarks.loadPeterson2());
@@ -68,9 +74,19 @@ public class LibAlfExamples implements CLITool {
 		}
 	}
 	
+	public static Collection<String> getExampleNames() {
+		return Collections.unmodifiableSet(dfaExamples.keySet());
+	}
+	
+	public static DFALearningExample<?> getExample(String name) {
+		return dfaExamples.get(name);
+	}
+	
+	static final String TOOL_NAME = "libalf-examples";
+	
 	@Override
 	public String getName() {
-		return "libalf-examples";
+		return TOOL_NAME;
 	}
 	
 	@Override
@@ -78,85 +94,121 @@ public class LibAlfExamples implements CLITool {
 		return "Compares the performance of LearnLib and LibAlf on a series of examples";
 	}
 	
+	private static final Library[] LIBRARIES = { Library.LEARNLIB, Library.LIBALF };
+	
+	public static <I> RunStats runSingle(String exampleName, DFALearningExample<I> example, LibAlf.Learner learnerPair,
+			Library library, OracleOptions options) {
+		DFA<?,I> target = example.getReferenceAutomaton();
+		Alphabet<I> alphabet = example.getAlphabet();
+		
+		try (OracleChain<I, Boolean> oracleChain = new OracleChain<>(options,
+					new SimulatorOracle.DFASimulatorOracle<>(target),
+					delegate -> new QueryStoreOracle.DFAQueryStoreOracle<>(options.getQueryStoreDir(),
+							target, alphabet, delegate))) {
+			if (library == Library.LIBALF) {
+				LibalfActiveDFALearner<I> libalfLearner = learnerPair
+						.createLibalfLearner(alphabet, oracleChain.recordQueries(oracleChain.getOracle(), alphabet, TOOL_NAME, exampleName, learnerPair.getName(), library));
+				try {
+					RunStats stats = Util.runLearner(example, libalfLearner, oracleChain.getOracle(), oracleChain.getOracle(),
+							oracleChain.createEQOracle());
+					oracleChain.store(stats);
+					return stats;
+				}
+				finally {
+					libalfLearner.dispose();
+				}
+			}
+		
+			MembershipOracle<I, Boolean> cacheOracle = oracleChain.createCache(alphabet, options.isIntTreeCache()
+					? delegate -> new PrefixTreeOracle.DFAPrefixTreeOracle<>(new IntArrayPrefixTree<>(alphabet.size()),
+							alphabet, delegate)
+					: delegate -> DFACaches.createTreeCache(alphabet, delegate));
+			TimedOracle<I, Boolean> timedCacheOracle = new TimedOracle<>(cacheOracle);
+			DFALearner<I> learnlibLearner = learnerPair
+					.createLearnLibLearner(alphabet, oracleChain.recordQueries(timedCacheOracle, alphabet, TOOL_NAME, exampleName, learnerPair.getName(), library));
+			RunStats stats = Util.runLearner(example, learnlibLearner, timedCacheOracle, oracleChain.getOracle(),
+					oracleChain.createEQOracle());
+			oracleChain.store(stats);
+			return stats;
+		}
+	}
+	
+	public static <I> List<Future<RunStats>> scheduleExample(String exampleName, DFALearningExample<I> example,
+			Collection<? extends LibAlf.Learner> learners, int repeatCount, boolean fork,
+			OracleOptions options, ExperimentScheduler scheduler) {
+		List<Future<RunStats>> results = new ArrayList<>();
+		for (LibAlf.Learner learnerPair : learners) {
+			for (int i = 0; i < repeatCount; i++) {
+				for (Library library : LIBRARIES) {
+					results.add(scheduler.submit(() -> {
+						if (fork) {
+							return ForkedCell.run(TOOL_NAME, exampleName, learnerPair.getName(), library, options);
+						}
+						if (scheduler.isSequential()) {
+							System.gc();
+						}
+						return runSingle(exampleName, example, learnerPair, library, options);
+					}));
+				}
+			}
+		}
+		return results;
+	}
+	
 	public static <I> void runExample(String exampleName, DFALearningExample<I> example,
-			Collection<? extends LibAlf.Learner> learners, int repeatCount, PrintWriter out) {
+			Collection<? extends LibAlf.Learner> learners, int repeatCount,
+			Iterator<Future<RunStats>> results, ExperimentScheduler scheduler, PrintWriter out,
+			PrintWriter roundsOut) {
 		DFA<?,I> target = example.getReferenceAutomaton();
 		Alphabet<I> alphabet = example.getAlphabet();
 	
 		System.out.println("Running example " + exampleName + "(" + alphabet.size() + "/" + target.size() + ")");
-		
-		MembershipOracle.DFAMembershipOracle<I> directOracle
-			= new SimulatorOracle.DFASimulatorOracle<>(target);
+		out.println(RunStats.formatColumnHeader("libalf"));
 
 		for (LibAlf.Learner learnerPair : learners) {
 			String learnerName = learnerPair.getName();
 			int learnerId = learnerPair.getId();
 
-			LongSummaryStatistics timeLearnlib = new LongSummaryStatistics();
-			LongSummaryStatistics timeLibalf = new LongSummaryStatistics();
-			LongSummaryStatistics queriesLearnlib = new LongSummaryStatistics();
-			LongSummaryStatistics queriesLibalf = new LongSummaryStatistics();
+			RunStats.Summary learnlibStats = new RunStats.Summary();
+			RunStats.Summary libalfStats = new RunStats.Summary();
 
 			for (int i = 0; i < repeatCount; i++) {
 				System.out.print(learnerName + " #" + i + " ... ");
 				System.out.flush();
-				System.gc();
 
 				// LearnLib
-				{
-					DFACounterOracle<I> directCounterOracle = new DFACounterOracle<I>(
-							directOracle, "MQs");
-
-					MembershipOracle.DFAMembershipOracle<I> cacheOracle = DFACaches
-							.createTreeCache(alphabet, directCounterOracle);
-
-					DFALearner<I> learnlibLearner = learnerPair
-							.createLearnLibLearner(alphabet, cacheOracle);
-					long learnLibMs = Util.runLearner(example, learnlibLearner);
-					System.out.print(learnLibMs + "ms ("
-							+ directCounterOracle.getCount() + "MQs)");
-					System.out.flush();
-
-					timeLearnlib.accept(learnLibMs);
-					queriesLearnlib.accept(directCounterOracle.getCount());
-
-					directCounterOracle = null;
-					cacheOracle = null;
-					learnlibLearner = null;
+				RunStats learnlibRun = scheduler.await(results.next());
+				System.out.print(learnlibRun);
+				System.out.flush();
+				learnlibStats.accept(learnlibRun);
+				if (roundsOut != null) {
+					learnlibRun.printRounds(roundsOut, learnerName + " learnlib " + i);
 				}
-				System.gc();
 
 				// LibAlf
-				{
-					DFACounterOracle<I> libalfCounterOracle = new DFACounterOracle<I>(
-							directOracle, "MQs");
-
-					LibalfActiveDFALearner<I> libalfLearner = learnerPair
-							.createLibalfLearner(alphabet, libalfCounterOracle);
-					long libalfMs = Util.runLearner(example, libalfLearner);
-					System.out.println(" / " + libalfMs + "ms ("
-							+ libalfCounterOracle.getCount() + " MQs)");
-					timeLibalf.accept(libalfMs);
-					queriesLibalf.accept(libalfCounterOracle.getCount());
-
-					libalfCounterOracle = null;
-					libalfLearner.dispose();
-					libalfLearner = null;
+				RunStats libalfRun = scheduler.await(results.next());
+				System.out.println(" / " + libalfRun);
+				libalfStats.accept(libalfRun);
+				if (roundsOut != null) {
+					libalfRun.printRounds(roundsOut, learnerName + " libalf " + i);
 				}
-				System.gc();
 			}
 
-			out.println(String.format(Locale.ENGLISH, "%s %d %f %f %f %f",
-					learnerName, learnerId, timeLearnlib.getAverage(),
-					queriesLearnlib.getAverage(), timeLibalf.getAverage(),
-					queriesLibalf.getAverage()));
+			out.println(learnerName + " " + learnerId + " " + RunStats.formatColumns(learnlibStats, libalfStats));
 			out.flush();
+			if (roundsOut != null) {
+				roundsOut.flush();
+			}
 		}
 
 	}
 	
 	private String outputDirName = null;
 	private int repeatCount = 10;
+	private int numJobs = 1;
+	private boolean fork = false;
+	private boolean timeline = false;
+	private final OracleOptions oracleOptions = new OracleOptions();
 	
 	private static final String USAGE_MSG =
 			"Usage: \n" +
@@ -165,7 +217,16 @@ public class LibAlfExamples implements CLITool {
 			" {0} [<options...>] <output-dir>\n" +
 			"   Runs LearnLib and LibAlf algorithms on a set of examples.\n" +
 			"   Options can be any of:\n" +
-			"    -n|-repeat <num>    Sets the repeat count for each example (default: 10)";
+			"    -n|-repeat <num>    Sets the repeat count for each example (default: 10)\n" +
+			"    -j|-jobs <num>      Sets the number of runs executed in parallel\n" +
+			"                        (default: 1). Parallel runs compete for CPU and\n" +
+			"                        memory, and thus influence the measured times\n" +
+			"    -f|-fork            Runs every single learner run in a freshly started JVM,\n" +
+			"                        using the same JVM options as this one\n" +
+			"    -t|-timeline        Additionally writes the hypothesis size, counterexample\n" +
+			"                        length, queries and time of every learning round to\n" +
+			"                        <example>-rounds.dat files\n" +
+			OracleOptions.USAGE;
 	
 	private void printUsage() {
 		System.err.println(MessageFormat.format(USAGE_MSG, getName()));
@@ -197,7 +258,42 @@ public class LibAlfExamples implements CLITool {
 						return false;
 					}
 					break;
+				case "f": case "fork":
+					this.fork = true;
+					break;
+				case "t": case "timeline":
+					this.timeline = true;
+					break;
+				case "j": case "jobs":
+					if (i == args.length) {
+						System.err.println("Error: expected argument to option " + arg);
+						return false;
+					}
+					String jstr = args[i++];
+					try {
+						this.numJobs = Integer.parseInt(jstr);
+					}
+					catch (NumberFormatException ex) {
+						System.err.println("Error: expected numeric argument to option " + arg);
+						return false;
+					}
+					if (numJobs <= 0) {
+						System.err.println("Error: argument to option " + arg + " must be positive");
+						return false;
+					}
+					break;
 				default:
+					try {
+						int next = oracleOptions.parseOption(args, i);
+						if (next >= 0) {
+							i = next;
+							break;
+						}
+					}
+					catch (IllegalArgumentException ex) {
+						System.err.println("Error: " + ex.getMessage());
+						return false;
+					}
 					System.err.println("Unknown option " + arg);
 					return false;
 				}
@@ -235,12 +331,24 @@ public class LibAlfExamples implements CLITool {
 		
 		Collection<LibAlf.Learner> learners = LibAlf.getLearners();
 		
-		for (Map.Entry<String,DFALearningExample<?>> example : dfaExamples.entrySet()) {
-			String name = example.getKey();
-			File resultsFile = new File(outputDir, "libalf-examples-" + name + ".dat");
-			try (PrintWriter pw = new PrintWriter(resultsFile)) { 
-				runExample(example.getKey(), example.getValue(), learners, repeatCount, pw);
-				System.out.println();
+		try (ExperimentScheduler scheduler = new ExperimentScheduler(numJobs)) {
+			Map<String,List<Future<RunStats>>> results = new HashMap<>();
+			for (Map.Entry<String,DFALearningExample<?>> example : dfaExamples.entrySet()) {
+				results.put(example.getKey(), scheduleExample(example.getKey(), example.getValue(), learners, repeatCount, fork, oracleOptions, scheduler));
+			}
+			
+			for (Map.Entry<String,DFALearningExample<?>> example : dfaExamples.entrySet()) {
+				String name = example.getKey();
+				File resultsFile = new File(outputDir, "libalf-examples-" + name + ".dat");
+				File roundsFile = new File(outputDir, "libalf-examples-" + name + "-rounds.dat");
+				try (PrintWriter pw = new PrintWriter(resultsFile);
+						PrintWriter roundsPw = timeline ? new PrintWriter(roundsFile) : null) {
+					if (roundsPw != null) {
+						roundsPw.println("# learner library repetition " + RunStats.Round.COLUMN_NAMES);
+					}
+					runExample(name, example.getValue(), learners, repeatCount, results.get(name).iterator(), scheduler, pw, roundsPw);
+					System.out.println();
+				}
 			}
 		}
 		
@@ -0,0 +1,266 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import net.automatalib.automata.UniversalDeterministicAutomaton;
+import net.automatalib.automata.concepts.Output;
+import net.automatalib.words.Alphabet;
+import de.learnlib.api.MembershipOracle;
+import de.learnlib.cav2015.performance.RunStats.Metric;
+import de.learnlib.oracles.CounterOracle;
+
+/**
+ * The oracles of a single learner run between the cache (if any) and the target system,
+ * as configured by {@link OracleOptions}. Queries pass through a {@link TimedOracle}, a
+ * {@link CounterOracle}, a {@link BatchingOracle} and, optionally, a {@link QueryStoreOracle}
+ * and a {@link ParallelOracle}. Below that, every worker
+ * of the parallel oracle (or the calling thread only) has its own sequence of an optional
+ * {@link LatencyHistogramOracle} and {@link SimulatedLatencyOracle}, in front of the shared
+ * target oracle, which hence must be thread-safe if the parallel oracle is used.
+ * The test words of equivalence oracles enter the chain through a separate
+ * {@link CounterOracle} and {@link BatchingOracle}, i.e., they bypass the cache, are not
+ * counted as membership queries, and do not contribute to the batch sizes of the learner.
+ */
+public final class OracleChain<I,D> implements AutoCloseable {
+	
+	private final TimedOracle<I,D> oracle;
+	private final CounterOracle<I,D> counterOracle;
+	private final CounterOracle<I,D> eqCounterOracle;
+	private final BatchingOracle<I,D> batchingOracle;
+	private final BatchingOracle<I,D> eqBatchingOracle;
+	private final PrefixTreeOracle<I,D,?> storeOracle;
+	private final ParallelOracle<I,D> parallelOracle;
+	private final List<LatencyHistogram> queryLatencies = new ArrayList<>();
+	private final LatencyHistogram batchLatencies;
+	private final boolean cacheStats;
+	private CacheStatsOracle<I,D> cacheStatsOracle;
+	private final OracleOptions options;
+	private TestWordsEQOracle<?,I,D> eqOracle;
+	private QueryLogFile.RecordingOracle<I,D> queryLog;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param options the oracle options
+	 * @param target the oracle answering queries on the target system
+	 * @param storeOracleFactory creates the oracle answering queries from the persistent
+	 * query store for the given delegate, only invoked if enabled in the options
+	 */
+	public OracleChain(OracleOptions options, MembershipOracle<I,D> target,
+			Function<? super MembershipOracle<I,D>, ? extends PrefixTreeOracle<I,D,?>> storeOracleFactory) {
+		int numWorkers = options.isParallel() ? options.getThreads() : 1;
+		List<MembershipOracle<I,D>> workerOracles = new ArrayList<>(numWorkers);
+		for (int i = 0; i < numWorkers; i++) {
+			MembershipOracle<I,D> next = target;
+			if (options.isSimulatedLatency()) {
+				next = new SimulatedLatencyOracle<>(next,
+						options.getResetMicros() * 1000L, options.getSymbolMicros() * 1000L,
+						options.getJitter(), new Random(OracleOptions.LATENCY_SEED + i));
+			}
+			if (options.isQueryLatencies()) {
+				LatencyHistogram workerLatencies = new LatencyHistogram();
+				queryLatencies.add(workerLatencies);
+				next = new LatencyHistogramOracle<>(next, workerLatencies, null);
+			}
+			workerOracles.add(next);
+		}
+		
+		MembershipOracle<I,D> next;
+		if (options.isParallel()) {
+			this.parallelOracle = new ParallelOracle<>(workerOracles, options.getChunkSize());
+			next = parallelOracle;
+		}
+		else {
+			this.parallelOracle = null;
+			next = workerOracles.get(0);
+		}
+		// batches are measured as posed by the learner (or cache), not per worker
+		if (options.isQueryLatencies()) {
+			this.batchLatencies = new LatencyHistogram();
+			next = new LatencyHistogramOracle<>(next, null, batchLatencies);
+		}
+		else {
+			this.batchLatencies = null;
+		}
+		if (options.getQueryStoreDir() != null) {
+			this.storeOracle = storeOracleFactory.apply(next);
+			next = storeOracle;
+		}
+		else {
+			this.storeOracle = null;
+		}
+		this.batchingOracle = new BatchingOracle<>(next, options.getBatchSize());
+		this.counterOracle = new CounterOracle<>(batchingOracle, "MQs");
+		this.oracle = new TimedOracle<>(counterOracle);
+		this.eqBatchingOracle = new BatchingOracle<>(next, options.getBatchSize());
+		this.eqCounterOracle = new CounterOracle<>(eqBatchingOracle, "EQs");
+		this.cacheStats = options.isCacheStats();
+		this.options = options;
+	}
+	
+	/**
+	 * Creates a query cache on top of this chain, using the given factory. If enabled in
+	 * the options, the cache is instrumented by a {@link CacheStatsOracle}.
+	 */
+	public MembershipOracle<I,D> createCache(Alphabet<I> alphabet,
+			Function<? super MembershipOracle<I,D>, ? extends MembershipOracle<I,D>> cacheFactory) {
+		if (!cacheStats) {
+			return cacheFactory.apply(oracle);
+		}
+		this.cacheStatsOracle = new CacheStatsOracle<>(alphabet, cacheFactory, oracle);
+		return cacheStatsOracle;
+	}
+	
+	/**
+	 * Records the query batches posed by the learner to the given oracle in a
+	 * {@link QueryLogFile}, if enabled in the options. The log is named after the run,
+	 * with a number appended if a log of that name exists, and is closed along with this
+	 * chain.
+	 * 
+	 * @return the oracle to be used by the learner
+	 */
+	public MembershipOracle<I,D> recordQueries(MembershipOracle<I,D> learnerOracle, Alphabet<I> alphabet,
+			String toolName, String exampleName, String learnerName, Library library) {
+		File dir = options.getQueryLogDir();
+		if (dir == null) {
+			return learnerOracle;
+		}
+		String baseName = (toolName + "-" + exampleName + "-" + learnerName + "-" + library).replaceAll("[^A-Za-z0-9._-]", "_");
+		try {
+			dir.mkdirs();
+			File file = new File(dir, baseName + ".qlog");
+			// creating the file is atomic, as forked runs may record concurrently
+			for (int i = 2; !file.createNewFile(); i++) {
+				file = new File(dir, baseName + "-" + i + ".qlog");
+			}
+			this.queryLog = new QueryLogFile.RecordingOracle<>(file, toolName, exampleName, learnerName, library,
+					alphabet, learnerOracle);
+			return queryLog;
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Could not create query log in " + dir, ex);
+		}
+	}
+	
+	/**
+	 * Creates the equivalence oracle selected in the options, posing its test words to this
+	 * chain.
+	 * 
+	 * @return the equivalence oracle, or {@code null} if the hypotheses should be checked
+	 * against the target directly
+	 */
+	public <A extends UniversalDeterministicAutomaton<?, I, ?, ?, ?> & Output<I, D>>
+	TestWordsEQOracle<A,I,D> createEQOracle() {
+		TestWordsEQOracle<A,I,D> result;
+		switch (options.getEQOracle()) {
+		case RANDOM_WORDS:
+			result = new TestWordsEQOracle.RandomWordsEQOracle<>(eqCounterOracle, options.getEQThreads(),
+					OracleOptions.EQ_SEED, options.getEQTests(), options.getEQLength());
+			break;
+		case RANDOM_WALK:
+			result = new TestWordsEQOracle.RandomWalkEQOracle<>(eqCounterOracle, options.getEQThreads(),
+					OracleOptions.EQ_SEED, options.getEQTests(), options.getEQLength());
+			break;
+		case W_METHOD:
+			result = new TestWordsEQOracle.WMethodEQOracle<>(eqCounterOracle, options.getEQThreads(),
+					options.getEQDepth());
+			break;
+		case WP_METHOD:
+			result = new TestWordsEQOracle.WpMethodEQOracle<>(eqCounterOracle, options.getEQThreads(),
+					options.getEQDepth());
+			break;
+		default:
+			return null;
+		}
+		this.eqOracle = result;
+		return result;
+	}
+	
+	/**
+	 * The entry point of the chain, to be used by the cache or the learner.
+	 */
+	public TimedOracle<I,D> getOracle() {
+		return oracle;
+	}
+	
+	/**
+	 * Stores the number of membership and equivalence queries, the batch size percentiles
+	 * of the membership queries, the number of equivalence query batches and, if recorded,
+	 * the latency percentiles, query store hits and misses and cache statistics in the
+	 * given statistics object.
+	 */
+	public void store(RunStats stats) {
+		stats.set(Metric.QUERIES, counterOracle.getCount());
+		stats.set(Metric.EQ_QUERIES, eqCounterOracle.getCount());
+		stats.set(Metric.EQ_BATCHES, eqBatchingOracle.getBatchSizes().getTotalCount());
+		LatencyHistogram batchSizes = batchingOracle.getBatchSizes();
+		stats.set(Metric.BATCHES, batchSizes.getTotalCount());
+		stats.set(Metric.BATCH_SIZE_P50, batchSizes.getValueAtPercentile(50.0));
+		stats.set(Metric.BATCH_SIZE_P90, batchSizes.getValueAtPercentile(90.0));
+		stats.set(Metric.BATCH_SIZE_MAX, batchSizes.getMax());
+		if (cacheStatsOracle != null) {
+			cacheStatsOracle.store(stats);
+		}
+		if (storeOracle != null) {
+			stats.set(Metric.STORE_HITS, storeOracle.getHits());
+			stats.set(Metric.STORE_MISSES, storeOracle.getMisses());
+		}
+		if (batchLatencies != null) {
+			LatencyHistogram queries = new LatencyHistogram();
+			for (LatencyHistogram workerLatencies : queryLatencies) {
+				queries.add(workerLatencies);
+			}
+			stats.set(Metric.QUERY_P50_NS, queries.getValueAtPercentile(50.0));
+			stats.set(Metric.QUERY_P90_NS, queries.getValueAtPercentile(90.0));
+			stats.set(Metric.QUERY_P99_NS, queries.getValueAtPercentile(99.0));
+			stats.set(Metric.QUERY_MAX_NS, queries.getMax());
+			stats.set(Metric.BATCH_P50_NS, batchLatencies.getValueAtPercentile(50.0));
+			stats.set(Metric.BATCH_P90_NS, batchLatencies.getValueAtPercentile(90.0));
+			stats.set(Metric.BATCH_P99_NS, batchLatencies.getValueAtPercentile(99.0));
+			stats.set(Metric.BATCH_MAX_NS, batchLatencies.getMax());
+		}
+	}
+	
+	@Override
+	public void close() {
+		if (eqOracle != null) {
+			eqOracle.close();
+		}
+		if (parallelOracle != null) {
+			parallelOracle.close();
+		}
+		if (storeOracle != null) {
+			storeOracle.close();
+		}
+		if (queryLog != null) {
+			try {
+				queryLog.close();
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException("Could not write query log", ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,464 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Options configuring the {@link OracleChain} of the performance evaluation tools. These
+ * are parsed by all tools in the same way, and passed on to forked JVMs.
+ */
+public final class OracleOptions {
+	
+	/**
+	 * The equivalence oracle used by the learner runs.
+	 */
+	public static enum EQOracle {
+		PERFECT("perfect"),
+		RANDOM_WORDS("random-words"),
+		RANDOM_WALK("random-walk"),
+		W_METHOD("w"),
+		WP_METHOD("wp");
+		
+		private final String name;
+		
+		private EQOracle(String name) {
+			this.name = name;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public static EQOracle fromName(String name) {
+			for (EQOracle eqOracle : values()) {
+				if (eqOracle.name.equals(name)) {
+					return eqOracle;
+				}
+			}
+			throw new IllegalArgumentException("unknown equivalence oracle " + name);
+		}
+		
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+	
+	/**
+	 * Usage text for the options, to be appended to the usage message of a tool.
+	 */
+	public static final String USAGE =
+			"    -q|-query-latencies Record histograms of the latencies of single queries and\n" +
+			"                        query batches posed to the target\n" +
+			"    -reset-cost <us>    Simulate a slow target, where every query requires a\n" +
+			"                        reset taking the given number of microseconds\n" +
+			"    -symbol-cost <us>   Simulate a slow target, where every input symbol of a\n" +
+			"                        query takes the given number of microseconds\n" +
+			"    -jitter <fraction>  Randomly vary the simulated cost of every query by up\n" +
+			"                        to the given fraction (between 0 and 1, default: 0)\n" +
+			"    -oracle-mode <mode> Answer each batch of queries sequentially or split it\n" +
+			"                        into chunks answered in parallel (sequential|parallel,\n" +
+			"                        default: sequential)\n" +
+			"    -oracle-threads <num> Number of threads answering queries in parallel mode\n" +
+			"                        (default: number of available processors)\n" +
+			"    -oracle-chunk-size <num> Number of queries per chunk in parallel mode, or 0\n" +
+			"                        to split each batch evenly among the threads (default: 0)\n" +
+			"    -batch-size <num>   Split the query batches of the learner into batches of\n" +
+			"                        at most the given size, or 0 for no limit (default: 0)\n" +
+			"    -query-store <dir>  Answer queries from a persistent store of the answers of\n" +
+			"                        previous runs in the given directory, if possible, and\n" +
+			"                        add new answers to it\n" +
+			"    -cache <impl>       The query cache used by LearnLib learners (tree for the\n" +
+			"                        generic tree cache, int-tree for a cache based on int\n" +
+			"                        arrays, default: tree)\n" +
+			"    -cache-stats        Record the queries posed to, answered by, and forwarded\n" +
+			"                        by the query cache, as well as the symbols it saved\n" +
+			"    -eq-oracle <oracle> The equivalence oracle (perfect for an exact check against\n" +
+			"                        the target, random-words, random-walk, w for the\n" +
+			"                        W-method, or wp for the Wp-method, default: perfect)\n" +
+			"    -eq-tests <num>     Number of test words per equivalence query of the random\n" +
+			"                        oracles (default: 10000)\n" +
+			"    -eq-length <num>    Maximum length of random words, or expected length of\n" +
+			"                        random walks (default: 50)\n" +
+			"    -eq-depth <num>     Maximum number of additional states of the target found\n" +
+			"                        by the W- and Wp-method (default: 1)\n" +
+			"    -eq-threads <num>   Number of threads generating test words (default: 1)\n" +
+			"    -record-queries <dir> Record the query batches posed by every learner to a\n" +
+			"                        compact log in the given directory, which can be\n" +
+			"                        replayed against other oracles and caches using\n" +
+			"                        query-replay\n" +
+			"    -target-cache <dir> Load generated targets from compact binary files in the\n" +
+			"                        given directory, generating and storing them there only\n" +
+			"                        if they are missing";
+	
+	/**
+	 * The seed for the jitter of simulated latencies, such that all runs see the same
+	 * sequence of delays.
+	 */
+	public static final long LATENCY_SEED = 42L;
+	
+	/**
+	 * The seed for random test words, such that all runs see the same test words.
+	 */
+	public static final long EQ_SEED = 42L;
+	
+	private boolean queryLatencies = false;
+	private long resetMicros = 0L;
+	private long symbolMicros = 0L;
+	private double jitter = 0.0;
+	private boolean parallel = false;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int chunkSize = 0;
+	private int batchSize = 0;
+	private File queryStoreDir = null;
+	private boolean intTreeCache = false;
+	private boolean cacheStats = false;
+	private EQOracle eqOracle = EQOracle.PERFECT;
+	private int eqTests = 10000;
+	private int eqLength = 50;
+	private int eqDepth = 1;
+	private int eqThreads = 1;
+	private File targetCacheDir = null;
+	private File queryLogDir = null;
+	
+	public boolean isQueryLatencies() {
+		return queryLatencies;
+	}
+	
+	public boolean isSimulatedLatency() {
+		return resetMicros > 0L || symbolMicros > 0L;
+	}
+	
+	public long getResetMicros() {
+		return resetMicros;
+	}
+	
+	public long getSymbolMicros() {
+		return symbolMicros;
+	}
+	
+	public double getJitter() {
+		return jitter;
+	}
+	
+	public boolean isParallel() {
+		return parallel;
+	}
+	
+	public int getThreads() {
+		return threads;
+	}
+	
+	public int getChunkSize() {
+		return chunkSize;
+	}
+	
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * The directory of the persistent query stores, or {@code null} if queries should
+	 * not be stored.
+	 */
+	public File getQueryStoreDir() {
+		return queryStoreDir;
+	}
+	
+	/**
+	 * Whether the LearnLib learners should use an {@link IntArrayPrefixTree} cache instead
+	 * of the generic LearnLib tree cache.
+	 */
+	public boolean isIntTreeCache() {
+		return intTreeCache;
+	}
+	
+	public boolean isCacheStats() {
+		return cacheStats;
+	}
+	
+	public EQOracle getEQOracle() {
+		return eqOracle;
+	}
+	
+	public int getEQTests() {
+		return eqTests;
+	}
+	
+	public int getEQLength() {
+		return eqLength;
+	}
+	
+	public int getEQDepth() {
+		return eqDepth;
+	}
+	
+	public int getEQThreads() {
+		return eqThreads;
+	}
+	
+	/**
+	 * The cache of generated targets, or {@code null} if targets should be generated
+	 * by every run.
+	 */
+	public TargetCache getTargetCache() {
+		return (targetCacheDir == null) ? null : new TargetCache(targetCacheDir);
+	}
+	
+	/**
+	 * The directory of the query logs, or {@code null} if queries should not be recorded.
+	 */
+	public File getQueryLogDir() {
+		return queryLogDir;
+	}
+	
+	/**
+	 * Parses the option {@code args[i - 1]}, if it is an oracle option.
+	 * 
+	 * @return the index of the next argument to parse, or {@code -1} if
+	 * {@code args[i - 1]} is not an oracle option
+	 * @throws IllegalArgumentException if the arguments of the option are invalid
+	 */
+	public int parseOption(String[] args, int i) {
+		String arg = args[i - 1];
+		switch (arg.substring(1)) {
+		case "q": case "query-latencies":
+			this.queryLatencies = true;
+			return i;
+		case "reset-cost":
+			this.resetMicros = parseNonNegativeLong(arg, args, i);
+			return i + 1;
+		case "symbol-cost":
+			this.symbolMicros = parseNonNegativeLong(arg, args, i);
+			return i + 1;
+		case "jitter":
+			if (i == args.length) {
+				throw new IllegalArgumentException("expected argument to option " + arg);
+			}
+			try {
+				this.jitter = Double.parseDouble(args[i]);
+			}
+			catch (NumberFormatException ex) {
+				throw new IllegalArgumentException("expected numeric argument to option " + arg);
+			}
+			if (jitter < 0.0 || jitter > 1.0) {
+				throw new IllegalArgumentException("argument to option " + arg + " must be between 0 and 1");
+			}
+			return i + 1;
+		case "oracle-mode":
+			if (i == args.length) {
+				throw new IllegalArgumentException("expected argument to option " + arg);
+			}
+			switch (args[i]) {
+			case "sequential":
+				this.parallel = false;
+				break;
+			case "parallel":
+				this.parallel = true;
+				break;
+			default:
+				throw new IllegalArgumentException("unknown oracle mode " + args[i]);
+			}
+			return i + 1;
+		case "oracle-threads":
+			this.threads = parseNonNegativeInt(arg, args, i);
+			if (threads == 0) {
+				throw new IllegalArgumentException("argument to option " + arg + " must be positive");
+			}
+			return i + 1;
+		case "oracle-chunk-size":
+			this.chunkSize = parseNonNegativeInt(arg, args, i);
+			return i + 1;
+		case "batch-size":
+			this.batchSize = parseNonNegativeInt(arg, args, i);
+			return i + 1;
+		case "query-store":
+			if (i == args.length) {
+				throw new IllegalArgumentException("expected argument to option " + arg);
+			}
+			this.queryStoreDir = new File(args[i]).getAbsoluteFile();
+			return i + 1;
+		case "cache-stats":
+			this.cacheStats = true;
+			return i;
+		case "cache":
+			if (i == args.length) {
+				throw new IllegalArgumentException("expected argument to option " + arg);
+			}
+			switch (args[i]) {
+			case "tree":
+				this.intTreeCache = false;
+				break;
+			case "int-tree":
+				this.intTreeCache = true;
+				break;
+			default:
+				throw new IllegalArgumentException("unknown cache " + args[i]);
+			}
+			return i + 1;
+		case "eq-oracle":
+			if (i == args.length) {
+				throw new IllegalArgumentException("expected argument to option " + arg);
+			}
+			this.eqOracle = EQOracle.fromName(args[i]);
+			return i + 1;
+		case "eq-tests":
+			this.eqTests = parseNonNegativeInt(arg, args, i);
+			return i + 1;
+		case "eq-length":
+			this.eqLength = parseNonNegativeInt(arg, args, i);
+			if (eqLength == 0) {
+				throw new IllegalArgumentException("argument to option " + arg + " must be positive");
+			}
+			return i + 1;
+		case "eq-depth":
+			this.eqDepth = parseNonNegativeInt(arg, args, i);
+			return i + 1;
+		case "eq-threads":
+			this.eqThreads = parseNonNegativeInt(arg, args, i);
+			if (eqThreads == 0) {
+				throw new IllegalArgumentException("argument to option " + arg + " must be positive");
+			}
+			return i + 1;
+		case "target-cache":
+			if (i == args.length) {
+				throw new IllegalArgumentException("expected argument to option " + arg);
+			}
+			this.targetCacheDir = new File(args[i]).getAbsoluteFile();
+			return i + 1;
+		case "record-queries":
+			if (i == args.length) {
+				throw new IllegalArgumentException("expected argument to option " + arg);
+			}
+			this.queryLogDir = new File(args[i]).getAbsoluteFile();
+			return i + 1;
+		default:
+			return -1;
+		}
+	}
+	
+	private static long parseNonNegativeLong(String arg, String[] args, int i) {
+		if (i == args.length) {
+			throw new IllegalArgumentException("expected argument to option " + arg);
+		}
+		long value;
+		try {
+			value = Long.parseLong(args[i]);
+		}
+		catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("expected numeric argument to option " + arg);
+		}
+		if (value < 0L) {
+			throw new IllegalArgumentException("argument to option " + arg + " must not be negative");
+		}
+		return value;
+	}
+	
+	private static int parseNonNegativeInt(String arg, String[] args, int i) {
+		long value = parseNonNegativeLong(arg, args, i);
+		if (value > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("argument to option " + arg + " must not exceed " + Integer.MAX_VALUE);
+		}
+		return (int) value;
+	}
+	
+	/**
+	 * Parses oracle options only, as passed to a forked JVM.
+	 */
+	public static OracleOptions parse(String[] args, int offset) {
+		OracleOptions options = new OracleOptions();
+		int i = offset;
+		while (i < args.length) {
+			String arg = args[i++];
+			int next = options.parseOption(args, i);
+			if (next < 0) {
+				throw new IllegalArgumentException("Unknown oracle option " + arg);
+			}
+			i = next;
+		}
+		return options;
+	}
+	
+	/**
+	 * Retrieves the command line arguments that reproduce these options.
+	 */
+	public List<String> toArgs() {
+		List<String> args = new ArrayList<>();
+		if (queryLatencies) {
+			args.add("-query-latencies");
+		}
+		if (resetMicros > 0L) {
+			args.add("-reset-cost");
+			args.add(Long.toString(resetMicros));
+		}
+		if (symbolMicros > 0L) {
+			args.add("-symbol-cost");
+			args.add(Long.toString(symbolMicros));
+		}
+		if (jitter > 0.0) {
+			args.add("-jitter");
+			args.add(Double.toString(jitter));
+		}
+		if (parallel) {
+			args.add("-oracle-mode");
+			args.add("parallel");
+			args.add("-oracle-threads");
+			args.add(Integer.toString(threads));
+			args.add("-oracle-chunk-size");
+			args.add(Integer.toString(chunkSize));
+		}
+		if (batchSize > 0) {
+			args.add("-batch-size");
+			args.add(Integer.toString(batchSize));
+		}
+		if (queryStoreDir != null) {
+			args.add("-query-store");
+			args.add(queryStoreDir.getPath());
+		}
+		if (intTreeCache) {
+			args.add("-cache");
+			args.add("int-tree");
+		}
+		if (cacheStats) {
+			args.add("-cache-stats");
+		}
+		if (eqOracle != EQOracle.PERFECT) {
+			args.add("-eq-oracle");
+			args.add(eqOracle.getName());
+			args.add("-eq-tests");
+			args.add(Integer.toString(eqTests));
+			args.add("-eq-length");
+			args.add(Integer.toString(eqLength));
+			args.add("-eq-depth");
+			args.add(Integer.toString(eqDepth));
+			args.add("-eq-threads");
+			args.add(Integer.toString(eqThreads));
+		}
+		if (targetCacheDir != null) {
+			args.add("-target-cache");
+			args.add(targetCacheDir.getPath());
+		}
+		if (queryLogDir != null) {
+			args.add("-record-queries");
+			args.add(queryLogDir.getPath());
+		}
+		return args;
+	}
+}
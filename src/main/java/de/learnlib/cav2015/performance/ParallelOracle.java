@@ -0,0 +1,124 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.learnlib.api.MembershipOracle;
+import de.learnlib.api.Query;
+
+/**
+ * Membership oracle that splits every batch of queries into chunks, and processes these
+ * chunks concurrently. Every worker thread (including the calling thread, which takes part
+ * in processing the batch) uses a dedicated delegate oracle, such that the delegates do not
+ * need to be thread-safe. Chunks are assigned statically, i.e., of {@code n} workers, the
+ * {@code i}-th one processes the chunks {@code i}, {@code i+n}, {@code i+2n}, etc., such that
+ * the queries answered by each delegate do not depend on thread scheduling.
+ */
+public class ParallelOracle<I,D> implements MembershipOracle<I,D>, AutoCloseable {
+	
+	private final List<? extends MembershipOracle<I,D>> delegates;
+	private final int chunkSize;
+	private final ExecutorService executor;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param delegates the oracles to use, one per worker thread
+	 * @param chunkSize the number of queries per chunk, or {@code 0} to split every batch
+	 * evenly among the workers
+	 */
+	public ParallelOracle(List<? extends MembershipOracle<I,D>> delegates, int chunkSize) {
+		if (delegates.isEmpty()) {
+			throw new IllegalArgumentException("At least one delegate oracle is required");
+		}
+		this.delegates = delegates;
+		this.chunkSize = chunkSize;
+		this.executor = (delegates.size() > 1) ? Executors.newFixedThreadPool(delegates.size() - 1, r -> {
+			Thread t = new Thread(r, "parallel-oracle");
+			t.setDaemon(true);
+			return t;
+		}) : null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void processQueries(Collection<? extends Query<I, D>> queries) {
+		int numQueries = queries.size();
+		if (executor == null || numQueries <= 1) {
+			delegates.get(0).processQueries(queries);
+			return;
+		}
+		
+		List<? extends Query<I,D>> queryList = (queries instanceof List)
+				? (List<? extends Query<I,D>>) queries
+				: new ArrayList<>(queries);
+		int chunk = (chunkSize > 0) ? chunkSize : (numQueries + delegates.size() - 1) / delegates.size();
+		int numChunks = (numQueries - 1) / chunk + 1;
+		int numWorkers = Math.min(delegates.size(), numChunks);
+		
+		List<Future<?>> futures = new ArrayList<>(numWorkers - 1);
+		for (int i = 1; i < numWorkers; i++) {
+			MembershipOracle<I,D> delegate = delegates.get(i);
+			int firstChunk = i;
+			futures.add(executor.submit(() -> processChunks(delegate, queryList, chunk, firstChunk, numChunks, numWorkers)));
+		}
+		processChunks(delegates.get(0), queryList, chunk, 0, numChunks, numWorkers);
+		
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for query answers", ex);
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException("Query processing failed: " + cause.getMessage(), cause);
+		}
+	}
+	
+	private static <I,D> void processChunks(MembershipOracle<I,D> delegate, List<? extends Query<I,D>> queries,
+			int chunkSize, int firstChunk, int numChunks, int stride) {
+		for (int chunkIdx = firstChunk; chunkIdx < numChunks; chunkIdx += stride) {
+			int from = chunkIdx * chunkSize;
+			int to = Math.min(from + chunkSize, queries.size());
+			delegate.processQueries(queries.subList(from, to));
+		}
+	}
+
+	@Override
+	public void close() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+/**
+ * A prefix tree over the symbol indices of an input alphabet, associating outputs with
+ * (some of) its nodes. Nodes are identified by non-negative indices.
+ */
+public interface PrefixTree<O> {
+	
+	/**
+	 * Retrieves the index of the root node, which corresponds to the empty word.
+	 */
+	public int getRoot();
+	
+	/**
+	 * Retrieves the child of the given node for the symbol with the given index, or
+	 * {@code -1} if it is not stored.
+	 */
+	public int getChild(int node, int symbolIdx);
+	
+	/**
+	 * Retrieves the child of the given node for the symbol with the given index, creating
+	 * it if necessary.
+	 */
+	public int getOrAddChild(int node, int symbolIdx);
+	
+	/**
+	 * Retrieves the output stored for the given node, or {@code null} if it is unknown.
+	 */
+	public O getOutput(int node);
+	
+	public void setOutput(int node, O output);
+	
+	/**
+	 * Retrieves the number of nodes.
+	 */
+	public int size();
+}
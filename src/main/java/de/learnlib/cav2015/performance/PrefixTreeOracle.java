@@ -0,0 +1,224 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import net.automatalib.words.Alphabet;
+import net.automatalib.words.Word;
+import net.automatalib.words.WordBuilder;
+import de.learnlib.api.MembershipOracle;
+import de.learnlib.api.Query;
+
+/**
+ * Membership oracle that answers queries from a {@link PrefixTree} if possible, and
+ * forwards all other queries (in a single batch) to its delegate, storing their answers.
+ * Access to the prefix tree is synchronized on the tree, such that it may be shared by
+ * several oracles.
+ */
+public abstract class PrefixTreeOracle<I,D,O> implements MembershipOracle<I,D>, AutoCloseable {
+	
+	public static class MealyPrefixTreeOracle<I,O> extends PrefixTreeOracle<I,Word<O>,O> {
+		
+		public MealyPrefixTreeOracle(PrefixTree<O> tree, Alphabet<I> alphabet,
+				MembershipOracle<I, Word<O>> delegate) {
+			super(tree, alphabet, delegate);
+		}
+		
+		@Override
+		protected Word<O> lookup(Query<I, Word<O>> query) {
+			int start = find(query.getPrefix());
+			if (start < 0) {
+				return null;
+			}
+			// check for a complete answer first, such that misses do not allocate
+			Word<I> suffix = query.getSuffix();
+			int len = suffix.length();
+			int node = start;
+			for (int i = 0; i < len; i++) {
+				node = tree.getChild(node, alphabet.getSymbolIndex(suffix.getSymbol(i)));
+				if (node < 0 || tree.getOutput(node) == null) {
+					return null;
+				}
+			}
+			WordBuilder<O> wb = new WordBuilder<>(len);
+			node = start;
+			for (int i = 0; i < len; i++) {
+				node = tree.getChild(node, alphabet.getSymbolIndex(suffix.getSymbol(i)));
+				wb.append(tree.getOutput(node));
+			}
+			return wb.toWord();
+		}
+		
+		@Override
+		protected void insert(Query<I, Word<O>> query, Word<O> answer) {
+			Word<I> suffix = query.getSuffix();
+			int node = findOrAdd(query.getPrefix());
+			for (int i = 0; i < suffix.length(); i++) {
+				node = tree.getOrAddChild(node, alphabet.getSymbolIndex(suffix.getSymbol(i)));
+				tree.setOutput(node, answer.getSymbol(i));
+			}
+		}
+	}
+	
+	public static class DFAPrefixTreeOracle<I> extends PrefixTreeOracle<I,Boolean,Boolean> {
+		
+		public DFAPrefixTreeOracle(PrefixTree<Boolean> tree, Alphabet<I> alphabet,
+				MembershipOracle<I, Boolean> delegate) {
+			super(tree, alphabet, delegate);
+		}
+		
+		@Override
+		protected Boolean lookup(Query<I, Boolean> query) {
+			int node = find(query.getPrefix());
+			if (node >= 0) {
+				node = find(node, query.getSuffix());
+			}
+			return (node < 0) ? null : tree.getOutput(node);
+		}
+		
+		@Override
+		protected void insert(Query<I, Boolean> query, Boolean answer) {
+			int node = findOrAdd(tree.getRoot(), query.getPrefix());
+			tree.setOutput(findOrAdd(node, query.getSuffix()), answer);
+		}
+	}
+	
+	protected final PrefixTree<O> tree;
+	protected final Alphabet<I> alphabet;
+	private final MembershipOracle<I,D> delegate;
+	private long hits;
+	private long misses;
+	
+	protected PrefixTreeOracle(PrefixTree<O> tree, Alphabet<I> alphabet, MembershipOracle<I,D> delegate) {
+		this.tree = tree;
+		this.alphabet = alphabet;
+		this.delegate = delegate;
+	}
+	
+	/**
+	 * Retrieves the stored answer to the given query, or {@code null} if it is not stored.
+	 */
+	protected abstract D lookup(Query<I,D> query);
+	
+	protected abstract void insert(Query<I,D> query, D answer);
+	
+	protected int find(Word<I> word) {
+		return find(tree.getRoot(), word);
+	}
+	
+	// words are traversed by index, as iterators would be allocated for every query
+	protected int find(int node, Word<I> word) {
+		int len = word.length();
+		for (int i = 0; i < len && node >= 0; i++) {
+			node = tree.getChild(node, alphabet.getSymbolIndex(word.getSymbol(i)));
+		}
+		return node;
+	}
+	
+	protected int findOrAdd(Word<I> word) {
+		return findOrAdd(tree.getRoot(), word);
+	}
+	
+	protected int findOrAdd(int node, Word<I> word) {
+		int len = word.length();
+		for (int i = 0; i < len; i++) {
+			node = tree.getOrAddChild(node, alphabet.getSymbolIndex(word.getSymbol(i)));
+		}
+		return node;
+	}
+	
+	/**
+	 * The number of queries answered from the prefix tree.
+	 */
+	public long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * The number of queries forwarded to the delegate oracle.
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public void processQueries(Collection<? extends Query<I, D>> queries) {
+		List<StoringQuery> storing = null;
+		synchronized (tree) {
+			for (Query<I,D> q : queries) {
+				D answer = lookup(q);
+				if (answer != null) {
+					q.answer(answer);
+				}
+				else {
+					if (storing == null) {
+						storing = new ArrayList<>();
+					}
+					storing.add(new StoringQuery(q));
+				}
+			}
+		}
+		int numMissed = (storing == null) ? 0 : storing.size();
+		hits += queries.size() - numMissed;
+		if (numMissed == 0) {
+			return;
+		}
+		misses += numMissed;
+		
+		delegate.processQueries(storing);
+		synchronized (tree) {
+			for (StoringQuery q : storing) {
+				insert(q.query, q.answer);
+			}
+		}
+	}
+	
+	/**
+	 * Releases the resources of the prefix tree, if any. Does nothing by default.
+	 */
+	@Override
+	public void close() {
+	}
+	
+	private final class StoringQuery extends Query<I,D> {
+		private final Query<I,D> query;
+		private D answer;
+		
+		public StoringQuery(Query<I,D> query) {
+			this.query = query;
+		}
+		
+		@Override
+		public Word<I> getPrefix() {
+			return query.getPrefix();
+		}
+		
+		@Override
+		public Word<I> getSuffix() {
+			return query.getSuffix();
+		}
+		
+		@Override
+		public void answer(D output) {
+			this.answer = output;
+			query.answer(output);
+		}
+	}
+}
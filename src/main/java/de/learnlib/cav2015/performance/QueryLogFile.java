@@ -0,0 +1,244 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import net.automatalib.words.Alphabet;
+import net.automatalib.words.Word;
+import net.automatalib.words.WordBuilder;
+import de.learnlib.api.MembershipOracle;
+import de.learnlib.api.Query;
+import de.learnlib.oracles.DefaultQuery;
+
+/**
+ * A compact binary log of the query batches posed by a learner, which can be replayed
+ * against other oracle and cache implementations. The log is a GZIP-compressed stream,
+ * starting with a header of a magic int, the names of the tool, example, learner and
+ * library of the recorded run (as UTF strings), and the alphabet size. It is followed by
+ * one record per batch: the number of queries plus one ({@code 0} marks the end of the
+ * log), and for each query the lengths of its prefix and suffix, followed by the indices
+ * of their symbols. All numbers in records are stored as unsigned variable-length ints of
+ * seven bits per byte, such that most symbols take a single byte.
+ */
+public final class QueryLogFile {
+	
+	private static final int MAGIC = 0x514C4731; // "QLG1"
+	
+	private QueryLogFile() {}
+	
+	/**
+	 * Membership oracle wrapper that records every batch of queries before passing it on.
+	 */
+	public static final class RecordingOracle<I,D> implements MembershipOracle<I,D>, Closeable {
+		
+		private final MembershipOracle<I,D> delegate;
+		private final Alphabet<I> alphabet;
+		private final DataOutputStream out;
+		
+		public RecordingOracle(File file, String toolName, String exampleName, String learnerName,
+				Library library, Alphabet<I> alphabet, MembershipOracle<I,D> delegate) throws IOException {
+			this.delegate = delegate;
+			this.alphabet = alphabet;
+			this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file), 65536)));
+			out.writeInt(MAGIC);
+			out.writeUTF(toolName);
+			out.writeUTF(exampleName);
+			out.writeUTF(learnerName);
+			out.writeUTF(library.getName());
+			out.writeInt(alphabet.size());
+		}
+
+		@Override
+		public void processQueries(Collection<? extends Query<I, D>> queries) {
+			try {
+				writeVarInt(out, queries.size() + 1);
+				for (Query<I,D> q : queries) {
+					Word<I> prefix = q.getPrefix();
+					Word<I> suffix = q.getSuffix();
+					writeVarInt(out, prefix.length());
+					writeVarInt(out, suffix.length());
+					for (I sym : prefix) {
+						writeVarInt(out, alphabet.getSymbolIndex(sym));
+					}
+					for (I sym : suffix) {
+						writeVarInt(out, alphabet.getSymbolIndex(sym));
+					}
+				}
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			delegate.processQueries(queries);
+		}
+
+		@Override
+		public void close() throws IOException {
+			writeVarInt(out, 0);
+			out.close();
+		}
+	}
+	
+	/**
+	 * Reads the batches of a log one at a time.
+	 */
+	public static final class Reader implements Closeable {
+		
+		private final File file;
+		private final DataInputStream in;
+		private final String toolName;
+		private final String exampleName;
+		private final String learnerName;
+		private final String libraryName;
+		private final int alphabetSize;
+		private boolean finished = false;
+		
+		public Reader(File file) throws IOException {
+			this.file = file;
+			FileInputStream fileIn = new FileInputStream(file);
+			try {
+				this.in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(fileIn, 65536)));
+			}
+			catch (ZipException | EOFException ex) {
+				fileIn.close();
+				throw new IOException(file + " is not a query log", ex);
+			}
+			try {
+				if (in.readInt() != MAGIC) {
+					in.close();
+					throw new IOException(file + " is not a query log");
+				}
+				this.toolName = in.readUTF();
+				this.exampleName = in.readUTF();
+				this.learnerName = in.readUTF();
+				this.libraryName = in.readUTF();
+				this.alphabetSize = in.readInt();
+			}
+			catch (EOFException ex) {
+				in.close();
+				throw new IOException(file + " is not a query log", ex);
+			}
+		}
+		
+		public String getToolName() {
+			return toolName;
+		}
+		
+		public String getExampleName() {
+			return exampleName;
+		}
+		
+		public String getLearnerName() {
+			return learnerName;
+		}
+		
+		public String getLibraryName() {
+			return libraryName;
+		}
+		
+		public int getAlphabetSize() {
+			return alphabetSize;
+		}
+		
+		/**
+		 * Reads the next batch.
+		 * 
+		 * @return the queries of the batch, or {@code null} if the end of the log is reached
+		 * @throws IOException if the log is invalid or truncated
+		 */
+		public <I,D> List<DefaultQuery<I,D>> readBatch(Alphabet<I> alphabet) throws IOException {
+			if (finished) {
+				return null;
+			}
+			try {
+				int size = readVarInt(in) - 1;
+				if (size < 0) {
+					finished = true;
+					return null;
+				}
+				List<DefaultQuery<I,D>> batch = new ArrayList<>(size);
+				for (int i = 0; i < size; i++) {
+					int prefixLength = readVarInt(in);
+					int suffixLength = readVarInt(in);
+					Word<I> prefix = readWord(alphabet, prefixLength);
+					Word<I> suffix = readWord(alphabet, suffixLength);
+					batch.add(new DefaultQuery<>(prefix, suffix));
+				}
+				return batch;
+			}
+			catch (EOFException ex) {
+				throw new IOException(file + " is truncated", ex);
+			}
+		}
+		
+		private <I> Word<I> readWord(Alphabet<I> alphabet, int length) throws IOException {
+			if (length == 0) {
+				return Word.epsilon();
+			}
+			WordBuilder<I> wb = new WordBuilder<>(length);
+			for (int i = 0; i < length; i++) {
+				int symIdx = readVarInt(in);
+				if (symIdx >= alphabetSize) {
+					throw new IOException("invalid symbol index " + symIdx + " in " + file);
+				}
+				wb.add(alphabet.getSymbol(symIdx));
+			}
+			return wb.toWord();
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+	
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+	
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("invalid variable-length int");
+	}
+}
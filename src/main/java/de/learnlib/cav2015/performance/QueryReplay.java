@@ -0,0 +1,361 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+import net.automatalib.automata.fsa.DFA;
+import net.automatalib.automata.transout.MealyMachine;
+import net.automatalib.words.Alphabet;
+import net.automatalib.words.Word;
+
+import com.misberner.clitools.api.CLITool;
+
+import de.learnlib.api.MembershipOracle;
+import de.learnlib.api.Query;
+import de.learnlib.cache.dfa.DFACaches;
+import de.learnlib.cache.mealy.MealyCaches;
+import de.learnlib.cav2015.performance.RunStats.Metric;
+import de.learnlib.examples.LearningExample.DFALearningExample;
+import de.learnlib.examples.LearningExample.MealyLearningExample;
+import de.learnlib.oracles.DefaultQuery;
+import de.learnlib.oracles.SimulatorOracle;
+
+/**
+ * Replays the query batches recorded by the {@code -record-queries} option of the
+ * performance tools against the oracle chain and query cache configured by the
+ * {@link OracleOptions}, such that caches can be compared without re-running the learners.
+ * The target of a log is looked up by the tool and example names stored in its header.
+ */
+public class QueryReplay implements CLITool {
+	
+	private static final List<Metric> CHAIN_METRICS = Collections.unmodifiableList(
+			Arrays.asList(Metric.QUERIES, Metric.BATCHES, Metric.STORE_HITS, Metric.STORE_MISSES));
+	
+	@Override
+	public String getName() {
+		return "query-replay";
+	}
+
+	@Override
+	public String getDescription() {
+		return "Replays recorded query logs against different oracles and caches";
+	}
+	
+	private final List<File> logFiles = new ArrayList<>();
+	private String outputFileName = null;
+	private int repeatCount = 1;
+	private final OracleOptions oracleOptions = new OracleOptions();
+	private volatile Object measuredCache;
+	
+	private static final String USAGE_MSG =
+			"Usage: \n" +
+			" {0} -h|-help\n" +
+			"   Prints this message and exits.\n" +
+			" {0} [<options...>] <log-file...>\n" +
+			"   Replays the query batches of the given logs, recorded using the\n" +
+			"   -record-queries option, and reports the replay time, the memory retained\n" +
+			"   by the cache and the cache hits. The options of the recorded run do not\n" +
+			"   apply, the oracles and the cache are configured by the options below.\n" +
+			"   Options can be any of:\n" +
+			"    -n|-repeat <num>    Replays each log the given number of times, using a\n" +
+			"                        fresh cache every time (default: 1)\n" +
+			"    -o|-output <file>   Additionally writes one line per replay to the given\n" +
+			"                        data file\n" +
+			OracleOptions.USAGE;
+	
+	private void printUsage() {
+		System.err.println(MessageFormat.format(USAGE_MSG, getName()));
+		System.exit(0);
+	}
+	
+	private boolean parseOptions(String[] args) {
+		int i = 0;
+		while (i < args.length) {
+			String arg = args[i++];
+			if (arg.length() == 0) {
+				continue;
+			}
+			if (arg.charAt(0) == '-') {
+				switch (arg.substring(1)) {
+				case "h": case "help":
+					printUsage();
+				case "n": case "repeat":
+					if (i == args.length) {
+						System.err.println("Error: expected argument to option " + arg);
+						return false;
+					}
+					String nstr = args[i++];
+					try {
+						this.repeatCount = Integer.parseInt(nstr);
+					}
+					catch (NumberFormatException ex) {
+						System.err.println("Error: expected numeric argument to option " + arg);
+						return false;
+					}
+					break;
+				case "o": case "output":
+					if (i == args.length) {
+						System.err.println("Error: expected argument to option " + arg);
+						return false;
+					}
+					this.outputFileName = args[i++];
+					break;
+				default:
+					try {
+						int next = oracleOptions.parseOption(args, i);
+						if (next >= 0) {
+							i = next;
+							break;
+						}
+					}
+					catch (IllegalArgumentException ex) {
+						System.err.println("Error: " + ex.getMessage());
+						return false;
+					}
+					System.err.println("Unknown option " + arg);
+					return false;
+				}
+			}
+			else {
+				logFiles.add(new File(arg));
+			}
+		}
+		
+		return true;
+	}
+	
+	@Override
+	public boolean runMain(String[] args) throws IOException {
+		if (!parseOptions(args)) {
+			return false;
+		}
+		if (logFiles.isEmpty()) {
+			System.err.println("Error: no query log specified");
+			printUsage();
+			return false;
+		}
+		
+		try (PrintWriter out = (outputFileName != null) ? new PrintWriter(outputFileName) : null) {
+			if (out != null) {
+				out.println("# log learner library repetition log-batches log-mqs log-symbols"
+						+ " replay-ms mqs-per-s retained-bytes hits "
+						+ RunStats.formatColumnNames(Arrays.asList(Metric.ALLOCATED_BYTES, Metric.GC_COUNT, Metric.GC_TIME_MS))
+						+ " " + RunStats.formatColumnNames(CHAIN_METRICS)
+						+ " " + RunStats.formatColumnNames(RunStats.CACHE_METRICS));
+			}
+			for (File logFile : logFiles) {
+				if (!replayLog(logFile, out)) {
+					return false;
+				}
+			}
+		}
+		
+		return true;
+	}
+	
+	private boolean replayLog(File logFile, PrintWriter out) throws IOException {
+		String toolName, exampleName;
+		try (QueryLogFile.Reader reader = new QueryLogFile.Reader(logFile)) {
+			toolName = reader.getToolName();
+			exampleName = reader.getExampleName();
+			System.out.println("Replaying " + logFile + " (" + toolName + " " + exampleName
+					+ ", " + reader.getLearnerName() + ", " + reader.getLibraryName() + ")");
+		}
+		
+		TargetCache targetCache = oracleOptions.getTargetCache();
+		MealyLearningExample<?,?> mealyExample = null;
+		DFALearningExample<?> dfaExample = null;
+		switch (toolName) {
+		case JLearnExamples.TOOL_NAME:
+			mealyExample = JLearnExamples.getExample(exampleName, targetCache);
+			break;
+		case JLearnRandSeries.TOOL_NAME:
+			mealyExample = JLearnRandSeries.getExample(exampleName, targetCache);
+			break;
+		case LibAlfExamples.TOOL_NAME:
+			dfaExample = LibAlfExamples.getExample(exampleName);
+			break;
+		case LibAlfRandSeries.TOOL_NAME:
+			dfaExample = LibAlfRandSeries.getExample(exampleName, targetCache);
+			break;
+		default:
+			System.err.println("Error: unknown tool " + toolName + " in " + logFile);
+			return false;
+		}
+		if (mealyExample == null && dfaExample == null) {
+			System.err.println("Error: unknown example " + exampleName + " in " + logFile);
+			return false;
+		}
+		
+		for (int i = 0; i < repeatCount; i++) {
+			Replay replay = (mealyExample != null) ? replayMealy(logFile, mealyExample) : replayDFA(logFile, dfaExample);
+			System.out.println("#" + i + " ... " + replay);
+			if (out != null) {
+				out.println(logFile.getName() + " " + replay.learnerName + " " + replay.libraryName + " " + i + " "
+						+ replay.format());
+				out.flush();
+			}
+		}
+		System.out.println();
+		return true;
+	}
+	
+	private <I,O> Replay replayMealy(File logFile, MealyLearningExample<I,O> example) throws IOException {
+		MealyMachine<?,I,?,O> target = example.getReferenceAutomaton();
+		Alphabet<I> alphabet = example.getAlphabet();
+		
+		try (OracleChain<I, Word<O>> oracleChain = new OracleChain<>(oracleOptions,
+					new SimulatorOracle.MealySimulatorOracle<>(target),
+					delegate -> new QueryStoreOracle.MealyQueryStoreOracle<>(oracleOptions.getQueryStoreDir(),
+							target, alphabet, delegate))) {
+			return replay(logFile, alphabet, oracleChain, oracleOptions.isIntTreeCache()
+					? delegate -> new PrefixTreeOracle.MealyPrefixTreeOracle<>(new IntArrayPrefixTree<>(alphabet.size()),
+							alphabet, delegate)
+					: delegate -> MealyCaches.createTreeCache(alphabet, delegate));
+		}
+	}
+	
+	private <I> Replay replayDFA(File logFile, DFALearningExample<I> example) throws IOException {
+		DFA<?,I> target = example.getReferenceAutomaton();
+		Alphabet<I> alphabet = example.getAlphabet();
+		
+		try (OracleChain<I, Boolean> oracleChain = new OracleChain<>(oracleOptions,
+					new SimulatorOracle.DFASimulatorOracle<>(target),
+					delegate -> new QueryStoreOracle.DFAQueryStoreOracle<>(oracleOptions.getQueryStoreDir(),
+							target, alphabet, delegate))) {
+			return replay(logFile, alphabet, oracleChain, oracleOptions.isIntTreeCache()
+					? delegate -> new PrefixTreeOracle.DFAPrefixTreeOracle<>(new IntArrayPrefixTree<>(alphabet.size()),
+							alphabet, delegate)
+					: delegate -> DFACaches.createTreeCache(alphabet, delegate));
+		}
+	}
+	
+	/**
+	 * Poses the recorded batches to the cache. Only the cache calls are measured, reading
+	 * and decoding the log is not. The memory retained by the cache (including the growth of
+	 * the oracle chain, e.g., of a query store) is the difference in used heap memory after
+	 * garbage collection.
+	 */
+	private <I,D> Replay replay(File logFile, Alphabet<I> alphabet, OracleChain<I,D> oracleChain,
+			Function<? super MembershipOracle<I,D>, ? extends MembershipOracle<I,D>> cacheFactory) throws IOException {
+		try (QueryLogFile.Reader reader = new QueryLogFile.Reader(logFile)) {
+			if (reader.getAlphabetSize() != alphabet.size()) {
+				throw new IOException("alphabet size " + reader.getAlphabetSize() + " of " + logFile
+						+ " does not match target alphabet size " + alphabet.size());
+			}
+			Replay replay = new Replay(reader.getLearnerName(), reader.getLibraryName());
+			long heapBefore = usedHeapAfterGC();
+			MembershipOracle<I,D> cacheOracle = oracleChain.createCache(alphabet, cacheFactory);
+			replay.cacheName = cacheOracle.getClass().getSimpleName();
+			RunMeter meter = new RunMeter();
+			List<DefaultQuery<I,D>> batch;
+			while ((batch = reader.readBatch(alphabet)) != null) {
+				replay.batches++;
+				replay.queries += batch.size();
+				for (Query<I,D> q : batch) {
+					replay.symbols += q.getPrefix().length() + q.getSuffix().length();
+				}
+				meter.start();
+				cacheOracle.processQueries(batch);
+				meter.stop();
+			}
+			// a local variable does not keep the cache reachable once the JIT considers it
+			// dead, a volatile write cannot be eliminated
+			this.measuredCache = cacheOracle;
+			replay.retainedBytes = usedHeapAfterGC() - heapBefore;
+			this.measuredCache = null;
+			meter.store(replay.stats);
+			oracleChain.store(replay.stats);
+			replay.nanos = meter.getNanos();
+			return replay;
+		}
+	}
+	
+	/**
+	 * Determines the used heap memory after garbage collection. Some collectors leave dead
+	 * objects in place in most full collections, and only compact the heap completely in
+	 * every few collections, hence the heap is collected until its usage stops decreasing.
+	 */
+	private static long usedHeapAfterGC() {
+		Runtime runtime = Runtime.getRuntime();
+		long minUsed = Long.MAX_VALUE;
+		for (int stable = 0, i = 0; stable < 4 && i < 16; i++) {
+			System.gc();
+			long used = runtime.totalMemory() - runtime.freeMemory();
+			if (used < minUsed) {
+				minUsed = used;
+				stable = 0;
+			}
+			else {
+				stable++;
+			}
+		}
+		return minUsed;
+	}
+	
+	private static final class Replay {
+		private final String learnerName;
+		private final String libraryName;
+		private final RunStats stats = new RunStats();
+		private String cacheName;
+		private long batches;
+		private long queries;
+		private long symbols;
+		private long nanos;
+		private long retainedBytes;
+		
+		public Replay(String learnerName, String libraryName) {
+			this.learnerName = learnerName;
+			this.libraryName = libraryName;
+		}
+		
+		public long getHits() {
+			return queries - stats.get(Metric.QUERIES);
+		}
+		
+		public double getQueriesPerSecond() {
+			return (nanos == 0L) ? 0.0 : queries * 1.0e9 / nanos;
+		}
+		
+		public String format() {
+			return String.format(Locale.ENGLISH, "%d %d %d %d %.1f %d %d ",
+					batches, queries, symbols, stats.getTimeMs(), getQueriesPerSecond(), retainedBytes, getHits())
+					+ stats.format(Arrays.asList(Metric.ALLOCATED_BYTES, Metric.GC_COUNT, Metric.GC_TIME_MS))
+					+ " " + stats.format(CHAIN_METRICS)
+					+ " " + stats.format(RunStats.CACHE_METRICS);
+		}
+		
+		@Override
+		public String toString() {
+			double hitRate = (queries == 0L) ? 0.0 : 100.0 * getHits() / queries;
+			return String.format(Locale.ENGLISH,
+					"%d batches, %d MQs in %dms (%.0f MQs/s), %d KiB retained (%s), %d hits (%.1f%%), %d MQs to target",
+					batches, queries, stats.getTimeMs(), getQueriesPerSecond(), retainedBytes / 1024L, cacheName,
+					getHits(), hitRate, stats.get(Metric.QUERIES));
+		}
+	}
+}
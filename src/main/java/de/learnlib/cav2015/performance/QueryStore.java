@@ -0,0 +1,439 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.automatalib.automata.UniversalDeterministicAutomaton;
+import net.automatalib.automata.fsa.impl.compact.CompactDFA;
+import net.automatalib.automata.transout.impl.compact.CompactMealy;
+import net.automatalib.automata.transout.impl.compact.CompactMealyTransition;
+import net.automatalib.words.Alphabet;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * A persistent {@link PrefixTree} of query answers for a single target system, stored in a
+ * memory-mapped file. Nodes correspond to words over the input alphabet (identified by
+ * symbol indices), and are stored as records of {@code 1 + alphabetSize} ints: the code
+ * of the output associated with the node ({@code 0} if unknown) followed by the indices
+ * of the child nodes ({@code 0} if absent, as the root has index {@code 0}). The distinct
+ * outputs themselves are serialized to a separate file when the store is closed, and the
+ * node and output counts in the header are only updated then. New answers are written
+ * to the mapped file immediately, also into the records of stored nodes, hence a run that
+ * does not close the store may leave references to nodes and outputs beyond these counts.
+ * These are discarded when the store is opened again, such that only the answers stored
+ * before remain (and possibly new answers of stored nodes that use known outputs).
+ * <p>
+ * Stores are shared by all users within a JVM, and locked against concurrent use by other
+ * processes. If another process holds the lock, the stored answers are still available,
+ * but new answers are not persisted. Access to a store must be synchronized on the store.
+ */
+public final class QueryStore<O> implements PrefixTree<O> {
+	
+	private static final int MAGIC = 0x51535431; // "QST1"
+	private static final int HEADER_INTS = 4; // magic, alphabet size, node count, output count
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	private static final Map<File,QueryStore<?>> openStores = new HashMap<>();
+	
+	private final File file;
+	private final File outputsFile;
+	private final int recordSize;
+	private final FileChannel channel;
+	private final FileLock lock;
+	private IntBuffer buffer;
+	private int capacity;
+	private int numNodes;
+	private final List<O> outputs;
+	private final Map<O,Integer> outputCodes = new HashMap<>();
+	private int refCount;
+	
+	/**
+	 * Opens the store for the target with the given fingerprint in the given directory,
+	 * creating it if necessary. Every call must be matched by a call to {@link #close()}.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <O> QueryStore<O> open(File dir, String fingerprint, int alphabetSize) throws IOException {
+		File file = new File(dir, fingerprint + ".qst").getCanonicalFile();
+		synchronized (openStores) {
+			QueryStore<O> store = (QueryStore<O>) openStores.get(file);
+			if (store == null) {
+				dir.mkdirs();
+				store = new QueryStore<>(file, new File(dir, fingerprint + ".outputs"), alphabetSize);
+				openStores.put(file, store);
+			}
+			store.refCount++;
+			return store;
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private QueryStore(File file, File outputsFile, int alphabetSize) throws IOException {
+		this.file = file;
+		this.outputsFile = outputsFile;
+		this.recordSize = 1 + alphabetSize;
+		
+		FileChannel fileChannel = new RandomAccessFile(file, "rw").getChannel();
+		FileLock fileLock = fileChannel.tryLock();
+		if (fileLock == null) {
+			System.err.println("Warning: query store " + file + " is in use by another process, "
+					+ "new answers will not be persisted");
+		}
+		
+		List<O> storedOutputs = null;
+		int storedNodes = 0;
+		if (fileChannel.size() >= HEADER_INTS * 4) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_INTS * 4);
+			fileChannel.read(header, 0L);
+			header.flip();
+			IntBuffer headerInts = header.asIntBuffer();
+			int storedOutputCount = headerInts.get(3);
+			if (headerInts.get(0) == MAGIC && headerInts.get(1) == alphabetSize && outputsFile.exists()) {
+				try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(outputsFile))) {
+					storedOutputs = (List<O>) in.readObject();
+				}
+				catch (ClassNotFoundException ex) {
+					storedOutputs = null;
+				}
+				if (storedOutputs != null && storedOutputs.size() == storedOutputCount) {
+					storedNodes = headerInts.get(2);
+				}
+				else {
+					storedOutputs = null;
+				}
+			}
+			if (storedOutputs == null) {
+				System.err.println("Warning: discarding invalid query store " + file);
+			}
+		}
+		this.outputs = (storedOutputs != null) ? storedOutputs : new ArrayList<>();
+		for (int i = 0; i < outputs.size(); i++) {
+			outputCodes.put(outputs.get(i), i + 1);
+		}
+		
+		if (fileLock != null) {
+			this.channel = fileChannel;
+			this.lock = fileLock;
+			map(Math.max(INITIAL_CAPACITY, storedNodes));
+		}
+		else {
+			// read-only snapshot of the stored nodes
+			this.channel = null;
+			this.lock = null;
+			int snapshotCapacity = Math.max(INITIAL_CAPACITY, storedNodes);
+			ByteBuffer snapshot = ByteBuffer.allocate((HEADER_INTS + snapshotCapacity * recordSize) * 4);
+			fileChannel.read(snapshot, 0L);
+			snapshot.clear();
+			this.buffer = snapshot.asIntBuffer();
+			this.capacity = snapshotCapacity;
+			fileChannel.close();
+		}
+		
+		this.numNodes = Math.max(1, storedNodes);
+		if (storedNodes == 0) {
+			clearRecord(0);
+		}
+		else {
+			discardUncommitted();
+		}
+	}
+	
+	/**
+	 * Removes references to nodes and outputs that were added by a run that did not close
+	 * the store, or that is still running in another process.
+	 */
+	private void discardUncommitted() {
+		int end = HEADER_INTS + numNodes * recordSize;
+		for (int i = HEADER_INTS; i < end; i += recordSize) {
+			if (buffer.get(i) > outputs.size()) {
+				buffer.put(i, 0);
+			}
+			for (int j = 1; j < recordSize; j++) {
+				if (buffer.get(i + j) >= numNodes) {
+					buffer.put(i + j, 0);
+				}
+			}
+		}
+	}
+	
+	private void map(int newCapacity) throws IOException {
+		long size = (HEADER_INTS + (long) newCapacity * recordSize) * 4L;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Query store " + file + " exceeds the maximum size");
+		}
+		// previous mappings are released once they become unreachable
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0L, size).asIntBuffer();
+		this.capacity = newCapacity;
+	}
+	
+	private void grow() {
+		int newCapacity = Math.min(capacity * 2, (Integer.MAX_VALUE / 4 - HEADER_INTS) / recordSize);
+		if (newCapacity <= capacity) {
+			throw new IllegalStateException("Query store " + file + " exceeds the maximum size");
+		}
+		if (channel != null) {
+			try {
+				map(newCapacity);
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException("Could not grow query store " + file + ": " + ex.getMessage(), ex);
+			}
+		}
+		else {
+			IntBuffer newBuffer = IntBuffer.allocate(HEADER_INTS + newCapacity * recordSize);
+			buffer.clear();
+			newBuffer.put(buffer);
+			this.buffer = newBuffer;
+			this.capacity = newCapacity;
+		}
+	}
+	
+	private void clearRecord(int node) {
+		int base = HEADER_INTS + node * recordSize;
+		for (int i = 0; i < recordSize; i++) {
+			buffer.put(base + i, 0);
+		}
+	}
+	
+	@Override
+	public int getRoot() {
+		return 0;
+	}
+	
+	@Override
+	public int getChild(int node, int symbolIdx) {
+		int child = buffer.get(HEADER_INTS + node * recordSize + 1 + symbolIdx);
+		return (child == 0) ? -1 : child;
+	}
+	
+	@Override
+	public int getOrAddChild(int node, int symbolIdx) {
+		int child = getChild(node, symbolIdx);
+		if (child >= 0) {
+			return child;
+		}
+		if (numNodes == capacity) {
+			grow();
+		}
+		child = numNodes++;
+		clearRecord(child);
+		buffer.put(HEADER_INTS + node * recordSize + 1 + symbolIdx, child);
+		return child;
+	}
+	
+	@Override
+	public O getOutput(int node) {
+		int code = buffer.get(HEADER_INTS + node * recordSize);
+		return (code == 0) ? null : outputs.get(code - 1);
+	}
+	
+	@Override
+	public void setOutput(int node, O output) {
+		Integer code = outputCodes.get(output);
+		if (code == null) {
+			outputs.add(output);
+			code = outputs.size();
+			outputCodes.put(output, code);
+		}
+		buffer.put(HEADER_INTS + node * recordSize, code);
+	}
+	
+	@Override
+	public int size() {
+		return numNodes;
+	}
+	
+	/**
+	 * Releases this store. When it is released by its last user, all new answers are
+	 * persisted.
+	 */
+	public void close() throws IOException {
+		// the store must be persisted before it can be opened again
+		synchronized (openStores) {
+			if (--refCount > 0) {
+				return;
+			}
+			openStores.remove(file);
+			if (channel == null) {
+				return;
+			}
+			synchronized (this) {
+				try {
+					try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(outputsFile))) {
+						out.writeObject(new ArrayList<>(outputs));
+					}
+					buffer.put(0, MAGIC);
+					buffer.put(1, recordSize - 1);
+					buffer.put(2, numNodes);
+					buffer.put(3, outputs.size());
+				}
+				finally {
+					lock.release();
+					channel.close();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Computes a fingerprint identifying the given target automaton, which is independent
+	 * of the object identity and hence the same in every run and every process. The
+	 * automaton is fed to the digest incrementally, compact automata in the order of their
+	 * state ids, other automata in breadth-first order.
+	 */
+	public static <S,I,T> String fingerprint(UniversalDeterministicAutomaton<S, I, T, ?, ?> target,
+			Alphabet<I> alphabet) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new DigestOutputStream(ByteStreams.nullOutputStream(), digest)))) {
+			out.writeInt(alphabet.size());
+			for (I sym : alphabet) {
+				out.writeUTF(String.valueOf(sym));
+			}
+			if (target instanceof CompactDFA) {
+				out.writeByte('D');
+				@SuppressWarnings("unchecked")
+				CompactDFA<I> dfa = (CompactDFA<I>) target;
+				writeCompactDFA(out, dfa, alphabet);
+			}
+			else if (target instanceof CompactMealy) {
+				out.writeByte('M');
+				@SuppressWarnings("unchecked")
+				CompactMealy<I,?> mealy = (CompactMealy<I,?>) target;
+				writeCompactMealy(out, mealy, alphabet);
+			}
+			else {
+				out.writeByte('G');
+				writeAutomaton(out, target, alphabet);
+			}
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+		
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(String.format("%02x", b & 0xff));
+		}
+		return hex.toString();
+	}
+	
+	private static <I> void writeCompactDFA(DataOutputStream out, CompactDFA<I> dfa, Alphabet<I> alphabet)
+			throws IOException {
+		int numStates = dfa.size();
+		out.writeInt(numStates);
+		out.writeInt(dfa.getIntInitialState());
+		for (int state = 0; state < numStates; state++) {
+			out.writeBoolean(dfa.isAccepting(state));
+			for (int i = 0; i < alphabet.size(); i++) {
+				out.writeInt(dfa.getIntSuccessor(state, alphabet.getSymbol(i)));
+			}
+		}
+	}
+	
+	private static <I,O> void writeCompactMealy(DataOutputStream out, CompactMealy<I,O> mealy, Alphabet<I> alphabet)
+			throws IOException {
+		Map<Object,Integer> outputCodes = new HashMap<>();
+		int numStates = mealy.size();
+		out.writeInt(numStates);
+		out.writeInt(mealy.getIntInitialState());
+		for (int state = 0; state < numStates; state++) {
+			for (int i = 0; i < alphabet.size(); i++) {
+				CompactMealyTransition<O> trans = mealy.getTransition(state, alphabet.getSymbol(i));
+				if (trans == null) {
+					out.writeInt(-1);
+					continue;
+				}
+				out.writeInt(mealy.getIntSuccessor(trans));
+				writeProperty(out, outputCodes, mealy.getTransitionOutput(trans));
+			}
+		}
+	}
+	
+	private static <S,I,T> void writeAutomaton(DataOutputStream out, UniversalDeterministicAutomaton<S, I, T, ?, ?> target,
+			Alphabet<I> alphabet) throws IOException {
+		Map<Object,Integer> propertyCodes = new HashMap<>();
+		Map<S,Integer> stateIds = new HashMap<>();
+		ArrayDeque<S> queue = new ArrayDeque<>();
+		S init = target.getInitialState();
+		if (init != null) {
+			stateIds.put(init, 0);
+			queue.add(init);
+		}
+		while (!queue.isEmpty()) {
+			S state = queue.poll();
+			writeProperty(out, propertyCodes, target.getStateProperty(state));
+			for (I sym : alphabet) {
+				T trans = target.getTransition(state, sym);
+				if (trans == null) {
+					out.writeInt(-1);
+					continue;
+				}
+				S succ = target.getSuccessor(trans);
+				Integer succId = stateIds.get(succ);
+				if (succId == null) {
+					succId = stateIds.size();
+					stateIds.put(succ, succId);
+					queue.add(succ);
+				}
+				out.writeInt(succId);
+				writeProperty(out, propertyCodes, target.getTransitionProperty(trans));
+			}
+		}
+	}
+	
+	// Properties are written as their string representation on their first occurrence,
+	// and as the number of that occurrence afterwards
+	private static void writeProperty(DataOutputStream out, Map<Object,Integer> codes, Object property)
+			throws IOException {
+		Integer code = codes.get(property);
+		if (code != null) {
+			out.writeInt(code);
+			return;
+		}
+		out.writeInt(codes.size());
+		out.writeUTF(String.valueOf(property));
+		codes.put(property, codes.size());
+	}
+}
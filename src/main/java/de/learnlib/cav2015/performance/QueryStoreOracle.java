@@ -0,0 +1,81 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import net.automatalib.automata.fsa.DFA;
+import net.automatalib.automata.transout.MealyMachine;
+import net.automatalib.words.Alphabet;
+import net.automatalib.words.Word;
+import de.learnlib.api.MembershipOracle;
+
+/**
+ * Membership oracles answering queries from the persistent {@link QueryStore} of their
+ * target, if possible. The store is released when the oracle is closed.
+ */
+public final class QueryStoreOracle {
+	
+	public static class MealyQueryStoreOracle<I,O> extends PrefixTreeOracle.MealyPrefixTreeOracle<I,O> {
+		
+		public MealyQueryStoreOracle(File dir, MealyMachine<?, I, ?, O> target, Alphabet<I> alphabet,
+				MembershipOracle<I, Word<O>> delegate) {
+			super(QueryStoreOracle.<O>open(dir, QueryStore.fingerprint(target, alphabet), alphabet), alphabet, delegate);
+		}
+		
+		@Override
+		public void close() {
+			QueryStoreOracle.close(tree);
+		}
+	}
+	
+	public static class DFAQueryStoreOracle<I> extends PrefixTreeOracle.DFAPrefixTreeOracle<I> {
+		
+		public DFAQueryStoreOracle(File dir, DFA<?, I> target, Alphabet<I> alphabet,
+				MembershipOracle<I, Boolean> delegate) {
+			super(QueryStoreOracle.<Boolean>open(dir, QueryStore.fingerprint(target, alphabet), alphabet), alphabet, delegate);
+		}
+		
+		@Override
+		public void close() {
+			QueryStoreOracle.close(tree);
+		}
+	}
+	
+	private static <O> QueryStore<O> open(File dir, String fingerprint, Alphabet<?> alphabet) {
+		try {
+			return QueryStore.open(dir, fingerprint, alphabet.size());
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Could not open query store in " + dir + ": " + ex.getMessage(), ex);
+		}
+	}
+	
+	private static void close(PrefixTree<?> store) {
+		try {
+			((QueryStore<?>) store).close();
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Could not persist query store: " + ex.getMessage(), ex);
+		}
+	}
+	
+	private QueryStoreOracle() {
+	}
+}
@@ -0,0 +1,113 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+import de.learnlib.cav2015.performance.RunStats.Metric;
+
+/**
+ * Accumulates wall-clock time, allocated bytes and garbage collection activity over
+ * a number of measured sections, which have to be executed on a single thread.
+ * <p>
+ * Allocated bytes are those of the measuring thread only (native allocations, e.g.,
+ * of libalf, are not included). Garbage collections are counted for the whole JVM,
+ * and thus include collections caused by runs executed in parallel.
+ */
+public final class RunMeter {
+	
+	private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN;
+	
+	static {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocationBean = null;
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+			if (!allocationBean.isThreadAllocatedMemorySupported()) {
+				allocationBean = null;
+			}
+			else if (!allocationBean.isThreadAllocatedMemoryEnabled()) {
+				allocationBean.setThreadAllocatedMemoryEnabled(true);
+			}
+		}
+		ALLOCATION_BEAN = allocationBean;
+	}
+	
+	private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+	
+	private long nanos;
+	private long allocatedBytes;
+	private long gcCount;
+	private long gcMillis;
+	
+	private long startNanos;
+	private long startAllocatedBytes;
+	private long startGcCount;
+	private long startGcMillis;
+	
+	public void start() {
+		startGcCount = 0L;
+		startGcMillis = 0L;
+		for (GarbageCollectorMXBean gcBean : gcBeans) {
+			startGcCount += Math.max(0L, gcBean.getCollectionCount());
+			startGcMillis += Math.max(0L, gcBean.getCollectionTime());
+		}
+		startAllocatedBytes = currentAllocatedBytes();
+		startNanos = System.nanoTime();
+	}
+	
+	public void stop() {
+		long endNanos = System.nanoTime();
+		long endAllocatedBytes = currentAllocatedBytes();
+		long endGcCount = 0L, endGcMillis = 0L;
+		for (GarbageCollectorMXBean gcBean : gcBeans) {
+			endGcCount += Math.max(0L, gcBean.getCollectionCount());
+			endGcMillis += Math.max(0L, gcBean.getCollectionTime());
+		}
+		
+		nanos += endNanos - startNanos;
+		allocatedBytes += endAllocatedBytes - startAllocatedBytes;
+		gcCount += endGcCount - startGcCount;
+		gcMillis += endGcMillis - startGcMillis;
+	}
+	
+	public long getNanos() {
+		return nanos;
+	}
+	
+	/**
+	 * Stores the accumulated measurements in the given statistics object. The number
+	 * of allocated bytes is reported as {@code -1} if the JVM does not support measuring
+	 * it.
+	 */
+	public void store(RunStats stats) {
+		stats.set(Metric.TIME_MS, nanos / 1000000L);
+		stats.set(Metric.ALLOCATED_BYTES, (ALLOCATION_BEAN != null) ? allocatedBytes : -1L);
+		stats.set(Metric.GC_COUNT, gcCount);
+		stats.set(Metric.GC_TIME_MS, gcMillis);
+	}
+	
+	private static long currentAllocatedBytes() {
+		if (ALLOCATION_BEAN == null) {
+			return 0L;
+		}
+		return ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
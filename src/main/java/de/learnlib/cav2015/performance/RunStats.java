@@ -0,0 +1,343 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.LongSummaryStatistics;
+
+/**
+ * Measurements of a single learner run.
+ */
+public final class RunStats {
+	
+	public static enum Metric {
+		TIME_MS("ms"),
+		QUERIES("mqs"),
+		ALLOCATED_BYTES("alloc-bytes"),
+		GC_COUNT("gcs"),
+		GC_TIME_MS("gc-ms"),
+		LEARNER_MS("learner-ms"),
+		CACHE_MS("cache-ms"),
+		ORACLE_MS("oracle-ms"),
+		EQ_MS("eq-ms"),
+		QUERY_P50_NS("mq-p50-ns"),
+		QUERY_P90_NS("mq-p90-ns"),
+		QUERY_P99_NS("mq-p99-ns"),
+		QUERY_MAX_NS("mq-max-ns"),
+		BATCH_P50_NS("batch-p50-ns"),
+		BATCH_P90_NS("batch-p90-ns"),
+		BATCH_P99_NS("batch-p99-ns"),
+		BATCH_MAX_NS("batch-max-ns"),
+		BATCHES("batches"),
+		BATCH_SIZE_P50("batch-size-p50"),
+		BATCH_SIZE_P90("batch-size-p90"),
+		BATCH_SIZE_MAX("batch-size-max"),
+		STORE_HITS("store-hits"),
+		STORE_MISSES("store-misses"),
+		CACHE_QUERIES("cache-mqs"),
+		CACHE_HITS("cache-hits"),
+		CACHE_MISSES("cache-misses"),
+		CACHE_PARTIAL_HITS("cache-partial-hits"),
+		CACHE_SAVED_SYMBOLS("cache-saved-symbols"),
+		CACHE_PREFIX_SYMBOLS("cache-prefix-symbols"),
+		EQ_QUERIES("eqs"),
+		EQ_BATCHES("eq-batches"),
+		CORRECT("correct");
+		
+		private final String columnName;
+		
+		private Metric(String columnName) {
+			this.columnName = columnName;
+		}
+		
+		public String getColumnName() {
+			return columnName;
+		}
+	}
+	
+	/**
+	 * The metrics reported in addition to time and queries, in the order in which
+	 * they are appended to the columns of the {@code ...-examples} data files.
+	 */
+	public static final List<Metric> EXTRA_METRICS = Collections.unmodifiableList(
+			Arrays.asList(Metric.ALLOCATED_BYTES, Metric.GC_COUNT, Metric.GC_TIME_MS,
+					Metric.LEARNER_MS, Metric.CACHE_MS, Metric.ORACLE_MS, Metric.EQ_MS,
+					Metric.QUERY_P50_NS, Metric.QUERY_P90_NS, Metric.QUERY_P99_NS, Metric.QUERY_MAX_NS,
+					Metric.BATCH_P50_NS, Metric.BATCH_P90_NS, Metric.BATCH_P99_NS, Metric.BATCH_MAX_NS,
+					Metric.BATCHES, Metric.BATCH_SIZE_P50, Metric.BATCH_SIZE_P90, Metric.BATCH_SIZE_MAX,
+					Metric.STORE_HITS, Metric.STORE_MISSES,
+					Metric.CACHE_QUERIES, Metric.CACHE_HITS, Metric.CACHE_MISSES, Metric.CACHE_PARTIAL_HITS,
+					Metric.CACHE_SAVED_SYMBOLS, Metric.CACHE_PREFIX_SYMBOLS,
+					Metric.EQ_QUERIES, Metric.EQ_BATCHES, Metric.CORRECT));
+	
+	/**
+	 * The total learner time, and its split into the different phases of a run.
+	 */
+	public static final List<Metric> PHASE_METRICS = Collections.unmodifiableList(
+			Arrays.asList(Metric.TIME_MS, Metric.LEARNER_MS, Metric.CACHE_MS, Metric.ORACLE_MS, Metric.EQ_MS));
+	
+	/**
+	 * The latency percentiles of single queries and query batches posed to the target,
+	 * which are only recorded if enabled in the {@link OracleOptions}.
+	 */
+	public static final List<Metric> LATENCY_METRICS = Collections.unmodifiableList(
+			Arrays.asList(Metric.QUERY_P50_NS, Metric.QUERY_P90_NS, Metric.QUERY_P99_NS, Metric.QUERY_MAX_NS,
+					Metric.BATCH_P50_NS, Metric.BATCH_P90_NS, Metric.BATCH_P99_NS, Metric.BATCH_MAX_NS));
+	
+	/**
+	 * The number of membership query batches forwarded to the target, and the percentiles
+	 * of their sizes.
+	 */
+	public static final List<Metric> BATCHING_METRICS = Collections.unmodifiableList(
+			Arrays.asList(Metric.BATCHES, Metric.BATCH_SIZE_P50, Metric.BATCH_SIZE_P90, Metric.BATCH_SIZE_MAX));
+	
+	/**
+	 * The number of queries answered from and not found in the persistent query store,
+	 * which are only recorded if enabled in the {@link OracleOptions}.
+	 */
+	public static final List<Metric> STORE_METRICS = Collections.unmodifiableList(
+			Arrays.asList(Metric.STORE_HITS, Metric.STORE_MISSES));
+	
+	/**
+	 * The effectiveness of the query cache, which is only recorded if enabled in the
+	 * {@link OracleOptions}.
+	 */
+	public static final List<Metric> CACHE_METRICS = Collections.unmodifiableList(
+			Arrays.asList(Metric.CACHE_QUERIES, Metric.CACHE_HITS, Metric.CACHE_MISSES,
+					Metric.CACHE_PARTIAL_HITS, Metric.CACHE_SAVED_SYMBOLS, Metric.CACHE_PREFIX_SYMBOLS));
+	
+	/**
+	 * The number of test words posed by the equivalence oracle and of the batches they
+	 * are posed in, and whether the final hypothesis is equivalent to the target
+	 * ({@code 1}) or not ({@code 0}), which is only in doubt if the equivalence oracle is
+	 * not perfect.
+	 */
+	public static final List<Metric> EQ_METRICS = Collections.unmodifiableList(
+			Arrays.asList(Metric.EQ_QUERIES, Metric.EQ_BATCHES, Metric.CORRECT));
+	
+	/**
+	 * A single round of a learner run, i.e., the initial {@code startLearning} call or a
+	 * {@code refineHypothesis} call.
+	 */
+	public static final class Round {
+		
+		public static final String COLUMN_NAMES = "round hyp-states ce-length mqs ms";
+		
+		private final int hypothesisSize;
+		private final int counterexampleLength;
+		private final long queries;
+		private final long nanos;
+		
+		public Round(int hypothesisSize, int counterexampleLength, long queries, long nanos) {
+			this.hypothesisSize = hypothesisSize;
+			this.counterexampleLength = counterexampleLength;
+			this.queries = queries;
+			this.nanos = nanos;
+		}
+		
+		public int getHypothesisSize() {
+			return hypothesisSize;
+		}
+		
+		/**
+		 * The length of the counterexample processed in this round, {@code 0} for the
+		 * initial round.
+		 */
+		public int getCounterexampleLength() {
+			return counterexampleLength;
+		}
+		
+		/**
+		 * The number of membership queries posed to the target in this round.
+		 */
+		public long getQueries() {
+			return queries;
+		}
+		
+		public long getNanos() {
+			return nanos;
+		}
+		
+		public String format() {
+			return hypothesisSize + " " + counterexampleLength + " " + queries + " " + nanos;
+		}
+		
+		public static Round parse(String line) {
+			String[] fields = line.trim().split("\\s+");
+			if (fields.length != 4) {
+				throw new IllegalArgumentException("Expected 4 values, got " + fields.length + ": " + line);
+			}
+			return new Round(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+					Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+		}
+	}
+	
+	private final long[] values = new long[Metric.values().length];
+	private final List<Round> rounds = new ArrayList<>();
+	
+	public RunStats() {
+	}
+	
+	public long get(Metric metric) {
+		return values[metric.ordinal()];
+	}
+	
+	public void set(Metric metric, long value) {
+		values[metric.ordinal()] = value;
+	}
+	
+	public long getTimeMs() {
+		return get(Metric.TIME_MS);
+	}
+	
+	public long getQueries() {
+		return get(Metric.QUERIES);
+	}
+	
+	public void addRound(Round round) {
+		rounds.add(round);
+	}
+	
+	public List<Round> getRounds() {
+		return Collections.unmodifiableList(rounds);
+	}
+	
+	/**
+	 * Writes one line per round, consisting of the given prefix followed by the columns
+	 * listed in {@link Round#COLUMN_NAMES}.
+	 */
+	public void printRounds(PrintWriter out, String prefix) {
+		int i = 0;
+		for (Round round : rounds) {
+			out.println(String.format(Locale.ENGLISH, "%s %d %d %d %d %.3f", prefix, i++,
+					round.getHypothesisSize(), round.getCounterexampleLength(),
+					round.getQueries(), round.getNanos() / 1000000.0));
+		}
+	}
+	
+	/**
+	 * Formats all values as a single line, which can be read back using {@link #parse(String)}.
+	 */
+	public String format() {
+		return format(Arrays.asList(Metric.values()));
+	}
+	
+	public static RunStats parse(String line) {
+		String[] fields = line.trim().split("\\s+");
+		if (fields.length != Metric.values().length) {
+			throw new IllegalArgumentException("Expected " + Metric.values().length
+					+ " values, got " + fields.length + ": " + line);
+		}
+		RunStats stats = new RunStats();
+		for (int i = 0; i < fields.length; i++) {
+			stats.values[i] = Long.parseLong(fields[i]);
+		}
+		return stats;
+	}
+	
+	public String format(List<Metric> metrics) {
+		StringBuilder sb = new StringBuilder();
+		for (Metric metric : metrics) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(get(metric));
+		}
+		return sb.toString();
+	}
+	
+	@Override
+	public String toString() {
+		if (get(Metric.EQ_QUERIES) > 0L) {
+			return getTimeMs() + "ms (" + getQueries() + " MQs, " + get(Metric.EQ_QUERIES) + " EQs)";
+		}
+		return getTimeMs() + "ms (" + getQueries() + " MQs)";
+	}
+	
+	/**
+	 * Aggregates the measurements of repeated runs.
+	 */
+	public static final class Summary {
+		private final LongSummaryStatistics[] stats = new LongSummaryStatistics[Metric.values().length];
+		
+		public Summary() {
+			for (int i = 0; i < stats.length; i++) {
+				stats[i] = new LongSummaryStatistics();
+			}
+		}
+		
+		public void accept(RunStats run) {
+			for (int i = 0; i < stats.length; i++) {
+				stats[i].accept(run.values[i]);
+			}
+		}
+		
+		public double getAverage(Metric metric) {
+			return stats[metric.ordinal()].getAverage();
+		}
+	}
+	
+	/**
+	 * Formats the columns of a line in an {@code ...-examples} data file: the averaged
+	 * time and queries of both libraries, followed by the {@link #EXTRA_METRICS} of both
+	 * libraries.
+	 */
+	public static String formatColumns(Summary learnlib, Summary other) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.ENGLISH, "%f %f %f %f",
+				learnlib.getAverage(Metric.TIME_MS), learnlib.getAverage(Metric.QUERIES),
+				other.getAverage(Metric.TIME_MS), other.getAverage(Metric.QUERIES)));
+		for (Metric metric : EXTRA_METRICS) {
+			sb.append(String.format(Locale.ENGLISH, " %f %f",
+					learnlib.getAverage(metric), other.getAverage(metric)));
+		}
+		return sb.toString();
+	}
+	
+	public static String formatColumnNames(List<Metric> metrics) {
+		StringBuilder sb = new StringBuilder();
+		for (Metric metric : metrics) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(metric.getColumnName());
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Formats a comment line describing the columns written by {@link #formatColumns(Summary, Summary)},
+	 * preceded by the learner name and id.
+	 */
+	public static String formatColumnHeader(String otherName) {
+		StringBuilder sb = new StringBuilder("# learner id");
+		sb.append(" learnlib-").append(Metric.TIME_MS.getColumnName());
+		sb.append(" learnlib-").append(Metric.QUERIES.getColumnName());
+		sb.append(' ').append(otherName).append('-').append(Metric.TIME_MS.getColumnName());
+		sb.append(' ').append(otherName).append('-').append(Metric.QUERIES.getColumnName());
+		for (Metric metric : EXTRA_METRICS) {
+			sb.append(" learnlib-").append(metric.getColumnName());
+			sb.append(' ').append(otherName).append('-').append(metric.getColumnName());
+		}
+		return sb.toString();
+	}
+}
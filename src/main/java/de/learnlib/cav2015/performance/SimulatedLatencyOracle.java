@@ -0,0 +1,82 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+import de.learnlib.api.MembershipOracle;
+import de.learnlib.api.Query;
+
+/**
+ * Membership oracle wrapper that delays every query to mimic a real system under
+ * learning: each query costs a reset, plus a round trip for every symbol of its input,
+ * with a random relative jitter applied to the total. Waiting is done by parking the
+ * thread, i.e., it does not consume CPU time, as waiting for a remote system would not.
+ * <p>
+ * Note that parking has a granularity in the order of tens of microseconds on most
+ * platforms, hence very small costs are rounded up.
+ */
+public class SimulatedLatencyOracle<I,D> implements MembershipOracle<I,D> {
+	
+	private final MembershipOracle<I,D> delegate;
+	private final long resetNanos;
+	private final long symbolNanos;
+	private final double jitter;
+	private final Random random;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param delegate the oracle answering the queries
+	 * @param resetNanos the cost of a reset, in nanoseconds
+	 * @param symbolNanos the cost of a single input symbol, in nanoseconds
+	 * @param jitter the maximal relative deviation from the nominal cost of a query, in
+	 * the range {@code [0,1]}
+	 * @param random the source of randomness for the jitter
+	 */
+	public SimulatedLatencyOracle(MembershipOracle<I,D> delegate, long resetNanos, long symbolNanos,
+			double jitter, Random random) {
+		this.delegate = delegate;
+		this.resetNanos = resetNanos;
+		this.symbolNanos = symbolNanos;
+		this.jitter = jitter;
+		this.random = random;
+	}
+
+	@Override
+	public void processQueries(Collection<? extends Query<I, D>> queries) {
+		for (Query<I,D> q : queries) {
+			long cost = resetNanos + symbolNanos * (q.getPrefix().length() + q.getSuffix().length());
+			if (jitter > 0.0) {
+				cost = (long) (cost * (1.0 + jitter * (2.0 * random.nextDouble() - 1.0)));
+			}
+			waitNanos(cost);
+		}
+		delegate.processQueries(queries);
+	}
+	
+	private static void waitNanos(long nanos) {
+		long deadline = System.nanoTime() + nanos;
+		long remaining = nanos;
+		while (remaining > 0L) {
+			LockSupport.parkNanos(remaining);
+			remaining = deadline - System.nanoTime();
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.function.Supplier;
+
+import net.automatalib.words.Alphabet;
+import de.learnlib.examples.DefaultLearningExample;
+import de.learnlib.examples.LearningExample.DFALearningExample;
+import de.learnlib.examples.LearningExample.MealyLearningExample;
+
+/**
+ * A directory of generated targets, stored as {@link CompactAutomatonFile}s, such that
+ * targets that are expensive to generate (large random automata, or DFAs converted to
+ * minimal Mealy machines) are generated only once and shared by all runs and forked JVMs.
+ * Targets are identified by a key, which must determine the generator and all of its
+ * parameters, including the seed.
+ * <p>
+ * Files are written to a temporary file first and then moved into place, such that
+ * concurrent runs generating the same target never see a partially written file.
+ */
+public final class TargetCache {
+	
+	private static final String SUFFIX = ".cta";
+	
+	private final File dir;
+	
+	public TargetCache(File dir) {
+		this.dir = dir;
+	}
+	
+	public <I> DFALearningExample<I> getDFAExample(String key, Alphabet<I> alphabet,
+			Supplier<? extends DFALearningExample<I>> generator) {
+		File file = new File(dir, key + SUFFIX);
+		if (file.exists()) {
+			try {
+				return new DefaultLearningExample.DefaultDFALearningExample<>(
+						CompactAutomatonFile.readDFA(file, alphabet));
+			}
+			catch (IOException ex) {
+				System.err.println("Warning: discarding invalid cached target " + file + ": " + ex.getMessage());
+			}
+		}
+		DFALearningExample<I> example = generator.get();
+		store(file, tmpFile -> CompactAutomatonFile.writeDFA(tmpFile, example.getReferenceAutomaton(), alphabet));
+		return example;
+	}
+	
+	public <I,O> MealyLearningExample<I,O> getMealyExample(String key, Alphabet<I> alphabet,
+			List<? extends O> outputs, Supplier<? extends MealyLearningExample<I,O>> generator) {
+		File file = new File(dir, key + SUFFIX);
+		if (file.exists()) {
+			try {
+				return new DefaultLearningExample.DefaultMealyLearningExample<>(
+						CompactAutomatonFile.readMealy(file, alphabet, outputs));
+			}
+			catch (IOException ex) {
+				System.err.println("Warning: discarding invalid cached target " + file + ": " + ex.getMessage());
+			}
+		}
+		MealyLearningExample<I,O> example = generator.get();
+		store(file, tmpFile -> CompactAutomatonFile.writeMealy(tmpFile, example.getReferenceAutomaton(),
+				alphabet, outputs));
+		return example;
+	}
+	
+	private static interface TargetWriter {
+		void write(File file) throws IOException;
+	}
+	
+	private void store(File file, TargetWriter writer) {
+		File tmpFile = null;
+		try {
+			dir.mkdirs();
+			tmpFile = File.createTempFile(file.getName(), ".tmp", dir);
+			writer.write(tmpFile);
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException ex) {
+			System.err.println("Warning: could not cache target " + file + ": " + ex.getMessage());
+			if (tmpFile != null) {
+				tmpFile.delete();
+			}
+		}
+	}
+}
@@ -0,0 +1,422 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.automatalib.automata.UniversalDeterministicAutomaton;
+import net.automatalib.automata.concepts.Output;
+import net.automatalib.automata.concepts.StateIDs;
+import net.automatalib.util.automata.Automata;
+import net.automatalib.words.Word;
+import net.automatalib.words.WordBuilder;
+import de.learnlib.api.EquivalenceOracle;
+import de.learnlib.api.MembershipOracle;
+import de.learnlib.oracles.DefaultQuery;
+
+/**
+ * Equivalence oracle that searches for counterexamples by posing test words to the target,
+ * as is required for target systems without a reference model. The test words of every
+ * equivalence query are split into chunks, which are generated (and run on the hypothesis)
+ * concurrently by a number of worker threads, including the calling thread. The words of
+ * a fixed number of chunks are then posed to the target as a single batch, and the first
+ * word (in the order of generation) on which the hypothesis and the target differ is
+ * returned. The test words, and hence the number of queries, only depend on the seed and
+ * the number of previous equivalence queries, not on the number of workers.
+ */
+public abstract class TestWordsEQOracle<A extends UniversalDeterministicAutomaton<?, I, ?, ?, ?> & Output<I, D>, I, D>
+		implements EquivalenceOracle<A, I, D>, AutoCloseable {
+	
+	/**
+	 * The (approximate) number of test words per chunk.
+	 */
+	public static final int CHUNK_SIZE = 64;
+	
+	/**
+	 * The number of chunks whose test words are posed to the target as a single batch.
+	 */
+	public static final int CHUNKS_PER_BATCH = 16;
+	
+	private static final class TestQuery<I,D> extends DefaultQuery<I,D> {
+		private final D hypothesisOutput;
+		
+		private TestQuery(Word<I> input, D hypothesisOutput) {
+			super(input);
+			this.hypothesisOutput = hypothesisOutput;
+		}
+	}
+	
+	private final MembershipOracle<I,D> oracle;
+	private final int numWorkers;
+	private final ExecutorService executor;
+	private final long seed;
+	private int round;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param oracle the oracle answering the test words
+	 * @param numWorkers the number of threads generating test words
+	 * @param seed the seed of random test words
+	 */
+	protected TestWordsEQOracle(MembershipOracle<I,D> oracle, int numWorkers, long seed) {
+		this.oracle = oracle;
+		this.numWorkers = numWorkers;
+		this.seed = seed;
+		this.executor = (numWorkers > 1) ? Executors.newFixedThreadPool(numWorkers - 1, r -> {
+			Thread t = new Thread(r, "eq-test-words");
+			t.setDaemon(true);
+			return t;
+		}) : null;
+	}
+	
+	/**
+	 * Prepares the generation of the test words for the given hypothesis. Afterwards,
+	 * {@link #generate(int, List)} is called concurrently for every chunk.
+	 * 
+	 * @return the number of chunks
+	 */
+	protected abstract int prepare(A hypothesis, List<? extends I> inputs);
+	
+	/**
+	 * Generates the test words of the given chunk.
+	 */
+	protected abstract void generate(int chunk, List<? super Word<I>> words);
+	
+	/**
+	 * A source of randomness for the given chunk of the current equivalence query.
+	 */
+	protected Random random(int chunk) {
+		return new Random(seed + ((long) round << 32) + chunk);
+	}
+	
+	@Override
+	public DefaultQuery<I, D> findCounterExample(A hypothesis, Collection<? extends I> inputs) {
+		int numChunks = prepare(hypothesis, new ArrayList<>(inputs));
+		try {
+			for (int first = 0; first < numChunks; first += CHUNKS_PER_BATCH) {
+				int last = Math.min(first + CHUNKS_PER_BATCH, numChunks);
+				AtomicReferenceArray<List<TestQuery<I,D>>> chunks = new AtomicReferenceArray<>(last - first);
+				generateChunks(hypothesis, first, last, chunks);
+				
+				List<TestQuery<I,D>> batch = new ArrayList<>();
+				for (int i = 0; i < chunks.length(); i++) {
+					batch.addAll(chunks.get(i));
+				}
+				oracle.processQueries(batch);
+				for (TestQuery<I,D> query : batch) {
+					if (!Objects.equals(query.hypothesisOutput, query.getOutput())) {
+						return new DefaultQuery<>(query.getInput(), query.getOutput());
+					}
+				}
+			}
+			return null;
+		}
+		finally {
+			round++;
+		}
+	}
+	
+	private void generateChunks(A hypothesis, int first, int last, AtomicReferenceArray<List<TestQuery<I,D>>> chunks) {
+		AtomicInteger nextChunk = new AtomicInteger(first);
+		int numTasks = Math.min(numWorkers, last - first);
+		List<Future<?>> futures = new ArrayList<>(numTasks - 1);
+		for (int i = 1; i < numTasks; i++) {
+			futures.add(executor.submit(() -> generateChunks(hypothesis, first, last, nextChunk, chunks)));
+		}
+		generateChunks(hypothesis, first, last, nextChunk, chunks);
+		
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while generating test words", ex);
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException("Test word generation failed: " + cause.getMessage(), cause);
+		}
+	}
+	
+	private void generateChunks(A hypothesis, int first, int last, AtomicInteger nextChunk,
+			AtomicReferenceArray<List<TestQuery<I,D>>> chunks) {
+		int chunk;
+		while ((chunk = nextChunk.getAndIncrement()) < last) {
+			List<Word<I>> words = new ArrayList<>();
+			generate(chunk, words);
+			List<TestQuery<I,D>> queries = new ArrayList<>(words.size());
+			for (Word<I> word : words) {
+				queries.add(new TestQuery<>(word, hypothesis.computeOutput(word)));
+			}
+			chunks.set(chunk - first, queries);
+		}
+	}
+	
+	@Override
+	public void close() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Random test words, whose lengths are uniformly distributed between 1 and a
+	 * maximum length.
+	 */
+	public static class RandomWordsEQOracle<A extends UniversalDeterministicAutomaton<?, I, ?, ?, ?> & Output<I, D>, I, D>
+			extends TestWordsEQOracle<A, I, D> {
+		
+		private final int numTests;
+		private final int maxLength;
+		private List<? extends I> inputs;
+		
+		public RandomWordsEQOracle(MembershipOracle<I,D> oracle, int numWorkers, long seed, int numTests, int maxLength) {
+			super(oracle, numWorkers, seed);
+			this.numTests = numTests;
+			this.maxLength = maxLength;
+		}
+		
+		@Override
+		protected int prepare(A hypothesis, List<? extends I> inputs) {
+			this.inputs = inputs;
+			return (int) ((numTests + (long) CHUNK_SIZE - 1) / CHUNK_SIZE);
+		}
+		
+		@Override
+		protected void generate(int chunk, List<? super Word<I>> words) {
+			Random random = random(chunk);
+			int num = Math.min(CHUNK_SIZE, numTests - chunk * CHUNK_SIZE);
+			for (int i = 0; i < num; i++) {
+				int length = 1 + random.nextInt(maxLength);
+				WordBuilder<I> wb = new WordBuilder<>(length);
+				for (int j = 0; j < length; j++) {
+					wb.append(inputs.get(random.nextInt(inputs.size())));
+				}
+				words.add(wb.toWord());
+			}
+		}
+	}
+	
+	/**
+	 * The test words of random walks on the target, which are reset with a fixed probability
+	 * after every step, such that their lengths are geometrically distributed with the given
+	 * expected length.
+	 */
+	public static class RandomWalkEQOracle<A extends UniversalDeterministicAutomaton<?, I, ?, ?, ?> & Output<I, D>, I, D>
+			extends TestWordsEQOracle<A, I, D> {
+		
+		private final int numTests;
+		private final double resetProbability;
+		private List<? extends I> inputs;
+		
+		public RandomWalkEQOracle(MembershipOracle<I,D> oracle, int numWorkers, long seed, int numTests, int expectedLength) {
+			super(oracle, numWorkers, seed);
+			this.numTests = numTests;
+			this.resetProbability = 1.0 / expectedLength;
+		}
+		
+		@Override
+		protected int prepare(A hypothesis, List<? extends I> inputs) {
+			this.inputs = inputs;
+			return (int) ((numTests + (long) CHUNK_SIZE - 1) / CHUNK_SIZE);
+		}
+		
+		@Override
+		protected void generate(int chunk, List<? super Word<I>> words) {
+			Random random = random(chunk);
+			int num = Math.min(CHUNK_SIZE, numTests - chunk * CHUNK_SIZE);
+			for (int i = 0; i < num; i++) {
+				WordBuilder<I> wb = new WordBuilder<>();
+				do {
+					wb.append(inputs.get(random.nextInt(inputs.size())));
+				} while (random.nextDouble() >= resetProbability);
+				words.add(wb.toWord());
+			}
+		}
+	}
+	
+	/**
+	 * The W-method, which concatenates every word of the transition cover of the hypothesis
+	 * with every word of at most the given depth and every word of its characterizing set.
+	 * This finds every counterexample if the target has at most {@code depth} more states
+	 * than the hypothesis.
+	 */
+	public static class WMethodEQOracle<A extends UniversalDeterministicAutomaton<?, I, ?, ?, ?> & Output<I, D>, I, D>
+			extends TestWordsEQOracle<A, I, D> {
+		
+		private final int depth;
+		private List<Word<I>> prefixes;
+		private List<Word<I>> middles;
+		private List<Word<I>> suffixes;
+		private int prefixesPerChunk;
+		
+		public WMethodEQOracle(MembershipOracle<I,D> oracle, int numWorkers, int depth) {
+			super(oracle, numWorkers, 0L);
+			this.depth = depth;
+		}
+		
+		@Override
+		protected int prepare(A hypothesis, List<? extends I> inputs) {
+			this.prefixes = Automata.transitionCover(hypothesis, inputs);
+			this.middles = allWords(inputs, depth);
+			this.suffixes = Automata.characterizingSet(hypothesis, inputs);
+			if (suffixes.isEmpty()) {
+				suffixes = Collections.singletonList(Word.<I>epsilon());
+			}
+			this.prefixesPerChunk = Math.max(1, CHUNK_SIZE / (middles.size() * suffixes.size()));
+			return (prefixes.size() + prefixesPerChunk - 1) / prefixesPerChunk;
+		}
+		
+		@Override
+		protected void generate(int chunk, List<? super Word<I>> words) {
+			int from = chunk * prefixesPerChunk;
+			int to = Math.min(from + prefixesPerChunk, prefixes.size());
+			for (Word<I> prefix : prefixes.subList(from, to)) {
+				for (Word<I> middle : middles) {
+					Word<I> word = prefix.concat(middle);
+					for (Word<I> suffix : suffixes) {
+						words.add(word.concat(suffix));
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The Wp-method, which concatenates the words of the state cover of the hypothesis with
+	 * the words of at most the given depth and the characterizing set, but the remaining
+	 * words of the transition cover only with the suffixes characterizing the states that
+	 * are reached. This finds the same counterexamples as the W-method with fewer test words.
+	 */
+	public static class WpMethodEQOracle<A extends UniversalDeterministicAutomaton<?, I, ?, ?, ?> & Output<I, D>, I, D>
+			extends TestWordsEQOracle<A, I, D> {
+		
+		private final int depth;
+		private UniversalDeterministicAutomaton<?, I, ?, ?, ?> hypothesis;
+		private List<? extends I> inputs;
+		private List<Word<I>> prefixes;
+		private int numStateCoverPrefixes;
+		private List<Word<I>> middles;
+		private List<Word<I>> suffixes;
+		private AtomicReferenceArray<List<Word<I>>> localSuffixes;
+		private int prefixesPerChunk;
+		
+		public WpMethodEQOracle(MembershipOracle<I,D> oracle, int numWorkers, int depth) {
+			super(oracle, numWorkers, 0L);
+			this.depth = depth;
+		}
+		
+		@Override
+		protected int prepare(A hypothesis, List<? extends I> inputs) {
+			this.hypothesis = hypothesis;
+			this.inputs = inputs;
+			List<Word<I>> stateCover = new ArrayList<>();
+			List<Word<I>> transitions = new ArrayList<>();
+			Automata.cover(hypothesis, inputs, stateCover, transitions);
+			this.prefixes = stateCover;
+			this.numStateCoverPrefixes = stateCover.size();
+			prefixes.addAll(transitions);
+			this.middles = allWords(inputs, depth);
+			this.suffixes = Automata.characterizingSet(hypothesis, inputs);
+			if (suffixes.isEmpty()) {
+				suffixes = Collections.singletonList(Word.<I>epsilon());
+			}
+			// the local suffixes of a state are computed by the first worker reaching it
+			this.localSuffixes = new AtomicReferenceArray<>(hypothesis.size());
+			this.prefixesPerChunk = Math.max(1, CHUNK_SIZE / (middles.size() * suffixes.size()));
+			return (prefixes.size() + prefixesPerChunk - 1) / prefixesPerChunk;
+		}
+		
+		@Override
+		protected void generate(int chunk, List<? super Word<I>> words) {
+			generate(hypothesis, chunk, words);
+		}
+		
+		private <S> void generate(UniversalDeterministicAutomaton<S, I, ?, ?, ?> hyp, int chunk,
+				List<? super Word<I>> words) {
+			StateIDs<S> stateIds = hyp.stateIDs();
+			int from = chunk * prefixesPerChunk;
+			int to = Math.min(from + prefixesPerChunk, prefixes.size());
+			for (int i = from; i < to; i++) {
+				Word<I> prefix = prefixes.get(i);
+				for (Word<I> middle : middles) {
+					Word<I> word = prefix.concat(middle);
+					List<Word<I>> wordSuffixes = suffixes;
+					if (i >= numStateCoverPrefixes) {
+						S state = hyp.getState(word);
+						if (state == null) {
+							words.add(word);
+							continue;
+						}
+						int id = stateIds.getStateId(state);
+						wordSuffixes = localSuffixes.get(id);
+						if (wordSuffixes == null) {
+							wordSuffixes = Automata.stateCharacterizingSet(hyp, inputs, state);
+							if (wordSuffixes.isEmpty()) {
+								wordSuffixes = Collections.singletonList(Word.<I>epsilon());
+							}
+							localSuffixes.compareAndSet(id, null, wordSuffixes);
+						}
+					}
+					for (Word<I> suffix : wordSuffixes) {
+						words.add(word.concat(suffix));
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * All words over the given inputs of at most the given length, in order of increasing
+	 * length.
+	 */
+	static <I> List<Word<I>> allWords(List<? extends I> inputs, int maxLength) {
+		List<Word<I>> words = new ArrayList<>();
+		words.add(Word.<I>epsilon());
+		int from = 0;
+		for (int length = 1; length <= maxLength; length++) {
+			int to = words.size();
+			for (int i = from; i < to; i++) {
+				for (I input : inputs) {
+					words.add(words.get(i).append(input));
+				}
+			}
+			from = to;
+		}
+		return words;
+	}
+}
@@ -0,0 +1,59 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.performance;
+
+import java.util.Collection;
+
+import de.learnlib.api.MembershipOracle;
+import de.learnlib.api.Query;
+
+/**
+ * Membership oracle wrapper that accumulates the wall-clock time spent in its delegate,
+ * as well as the number of queries it answered.
+ * Nesting two such oracles around a cache allows separating the time spent in the cache
+ * from the time spent in the oracle behind it.
+ */
+public class TimedOracle<I,D> implements MembershipOracle<I,D> {
+	
+	private final MembershipOracle<I,D> delegate;
+	private long nanos;
+	private long queryCount;
+	
+	public TimedOracle(MembershipOracle<I,D> delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void processQueries(Collection<? extends Query<I, D>> queries) {
+		long start = System.nanoTime();
+		try {
+			delegate.processQueries(queries);
+		}
+		finally {
+			nanos += System.nanoTime() - start;
+		}
+		queryCount += queries.size();
+	}
+	
+	public long getNanos() {
+		return nanos;
+	}
+	
+	public long getQueryCount() {
+		return queryCount;
+	}
+}
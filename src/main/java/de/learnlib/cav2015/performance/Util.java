@@ -16,13 +16,24 @@
  */
 package de.learnlib.cav2015.performance;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import net.automatalib.automata.UniversalDeterministicAutomaton;
 import net.automatalib.automata.concepts.Output;
-import net.automatalib.util.automata.Automata;
+import net.automatalib.automata.fsa.impl.compact.CompactDFA;
+import net.automatalib.automata.transout.impl.compact.CompactMealy;
+import net.automatalib.util.automata.random.RandomAutomata;
 import net.automatalib.words.Alphabet;
 import net.automatalib.words.Word;
+import net.automatalib.words.impl.Alphabets;
+import de.learnlib.api.EquivalenceOracle;
 import de.learnlib.api.LearningAlgorithm;
+import de.learnlib.cav2015.performance.RunStats.Metric;
+import de.learnlib.examples.DefaultLearningExample;
 import de.learnlib.examples.LearningExample;
+import de.learnlib.examples.LearningExample.DFALearningExample;
+import de.learnlib.examples.LearningExample.MealyLearningExample;
 import de.learnlib.oracles.DefaultQuery;
 
 public class Util {
@@ -39,31 +50,104 @@ public class Util {
 		}
 		return ints;
 	}
+	
+	// Random examples are generated from an explicit source of randomness, such that
+	// separate JVMs (e.g., JMH forks) learn exactly the same targets
+	public static MealyLearningExample<Integer,Boolean> randomMealyExample(Random random, int alphabetSize, int numStates) {
+		Alphabet<Integer> alphabet = Alphabets.integers(0, alphabetSize - 1);
+		CompactMealy<Integer,Boolean> mealy = RandomAutomata.randomMealy(random, numStates, alphabet, Arrays.asList(false, true));
+		return new DefaultLearningExample.DefaultMealyLearningExample<>(mealy);
+	}
+	
+	public static DFALearningExample<Integer> randomDFAExample(Random random, int alphabetSize, int numStates) {
+		Alphabet<Integer> alphabet = Alphabets.integers(0, alphabetSize - 1);
+		CompactDFA<Integer> dfa = RandomAutomata.randomDFA(random, numStates, alphabet);
+		return new DefaultLearningExample.DefaultDFALearningExample<>(dfa);
+	}
+	
+	// The compact generators are used for large targets, and use all available processors
+	public static MealyLearningExample<Integer,Boolean> compactRandomMealyExample(long seed, int alphabetSize, int numStates) {
+		Alphabet<Integer> alphabet = Alphabets.integers(0, alphabetSize - 1);
+		CompactMealy<Integer,Boolean> mealy = CompactRandomAutomata.randomMealy(seed, numStates, alphabet,
+				Arrays.asList(false, true), Runtime.getRuntime().availableProcessors());
+		return new DefaultLearningExample.DefaultMealyLearningExample<>(mealy);
+	}
+	
+	public static DFALearningExample<Integer> compactRandomDFAExample(long seed, int alphabetSize, int numStates) {
+		Alphabet<Integer> alphabet = Alphabets.integers(0, alphabetSize - 1);
+		CompactDFA<Integer> dfa = CompactRandomAutomata.randomDFA(seed, numStates, alphabet,
+				Runtime.getRuntime().availableProcessors());
+		return new DefaultLearningExample.DefaultDFALearningExample<>(dfa);
+	}
 
+	/**
+	 * Runs the learner until its hypothesis is equivalent to the target. The learner
+	 * must query the target through {@code learnerOracle}, which in turn must (possibly
+	 * through a cache) delegate to {@code directOracle}. If no cache is used, both
+	 * arguments may refer to the same oracle. Counterexamples are found by the given
+	 * equivalence oracle, whose time counts as equivalence checking, or by checking the
+	 * hypotheses against the target directly if it is {@code null}. In the former case,
+	 * the final hypothesis is compared to the target afterwards, which is not timed.
+	 */
 	public static <I,D,A extends UniversalDeterministicAutomaton<?, I, ?, ?, ?> & Output<I, D>>
-	long runLearner(
+	RunStats runLearner(
 			LearningExample<I, D, ? extends A> example, 
-			LearningAlgorithm<? extends A, I, D> learner) {
+			LearningAlgorithm<? extends A, I, D> learner,
+			TimedOracle<I, D> learnerOracle,
+			TimedOracle<I, D> directOracle,
+			EquivalenceOracle<? super A, I, D> eqOracle) {
 		A target = example.getReferenceAutomaton();
 		Alphabet<I> alphabet = example.getAlphabet();
 		
-		long learnerNanos = 0L;
-		long start = System.nanoTime();
+		RunStats stats = new RunStats();
+		RunMeter learnerMeter = new RunMeter();
+		learnerMeter.start();
 		learner.startLearning();
-		learnerNanos += System.nanoTime() - start;
+		learnerMeter.stop();
 		
 		A hyp = learner.getHypothesisModel();
+		stats.addRound(new RunStats.Round(hyp.size(), 0, directOracle.getQueryCount(), learnerMeter.getNanos()));
 		
 		Word<I> ceWord;
+		long eqStart = System.nanoTime();
+		EquivalenceChecker<I> eqChecker = (eqOracle == null) ? new EquivalenceChecker<>(target, alphabet) : null;
+		long eqNanos = System.nanoTime() - eqStart;
 		
-		while ((ceWord = Automata.findSeparatingWord(target, hyp, alphabet)) != null) {
-			DefaultQuery<I, D> ceQuery = new DefaultQuery<>(ceWord, target.computeOutput(ceWord));
-			start = System.nanoTime();
+		while (true) {
+			long start = System.nanoTime();
+			DefaultQuery<I, D> ceQuery;
+			if (eqOracle != null) {
+				ceQuery = eqOracle.findCounterExample(hyp, alphabet);
+				ceWord = (ceQuery == null) ? null : ceQuery.getInput();
+			}
+			else {
+				ceWord = eqChecker.findSeparatingWord(hyp);
+				ceQuery = (ceWord == null) ? null : new DefaultQuery<>(ceWord, target.computeOutput(ceWord));
+			}
+			eqNanos += System.nanoTime() - start;
+			if (ceQuery == null) {
+				break;
+			}
+			long roundQueries = directOracle.getQueryCount();
+			long roundNanos = learnerMeter.getNanos();
+			learnerMeter.start();
 			learner.refineHypothesis(ceQuery);
-			learnerNanos += System.nanoTime() - start;
+			learnerMeter.stop();
 			hyp = learner.getHypothesisModel();
+			stats.addRound(new RunStats.Round(hyp.size(), ceWord.length(),
+					directOracle.getQueryCount() - roundQueries, learnerMeter.getNanos() - roundNanos));
 		}
 		
-		return learnerNanos / 1000000L;
+		boolean correct = (eqOracle == null)
+				|| new EquivalenceChecker<>(target, alphabet).findSeparatingWord(hyp) == null;
+		stats.set(Metric.CORRECT, correct ? 1L : 0L);
+		
+		learnerMeter.store(stats);
+		// the learner time includes all (nested) oracle calls
+		stats.set(Metric.LEARNER_MS, (learnerMeter.getNanos() - learnerOracle.getNanos()) / 1000000L);
+		stats.set(Metric.CACHE_MS, (learnerOracle.getNanos() - directOracle.getNanos()) / 1000000L);
+		stats.set(Metric.ORACLE_MS, directOracle.getNanos() / 1000000L);
+		stats.set(Metric.EQ_MS, eqNanos / 1000000L);
+		return stats;
 	}
 }
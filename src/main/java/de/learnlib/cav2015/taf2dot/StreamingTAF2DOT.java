@@ -0,0 +1,552 @@
+/* Copyright (C) 2015 TU Dortmund
+ * This file is part of LearnLib, http://www.learnlib.de/.
+ * 
+ * LearnLib is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License version 3.0 as published by the Free Software Foundation.
+ * 
+ * LearnLib is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with LearnLib; if not, see
+ * <http://www.gnu.de/documents/lgpl.en.html>.
+ */
+package de.learnlib.cav2015.taf2dot;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import net.automatalib.commons.util.strings.StringUtil;
+
+/**
+ * Converts a TAF file to GraphVIZ DOT while parsing it, without building the automaton
+ * in memory. The output is the same as that of writing the automaton parsed by the
+ * {@code TAFParser} with {@code GraphDOT}: states are numbered in the order in which
+ * they are first mentioned, and their transitions are listed in the order of the input
+ * alphabet.
+ * <p>
+ * Only the names, acceptance and initial state of the states are kept in memory. As the
+ * DOT output lists all states before any edge, the edges of each state are spooled to a
+ * temporary file once its declaration has been parsed, and copied to the output in the
+ * order of the state numbers at the end.
+ * <p>
+ * Inconsistencies are handled like the {@code TAFParser} does: duplicate initial states,
+ * unknown input symbols and conflicting duplicate transitions are reported as errors and
+ * ignored, and states that are referenced but never declared have no transitions. The
+ * only exception are states declared more than once, whose transitions are merged by the
+ * parser, but cannot be merged once the edges of the first declaration are spooled.
+ */
+public final class StreamingTAF2DOT {
+	
+	/**
+	 * Signals a syntax or consistency error in a TAF file.
+	 */
+	public static class SyntaxException extends Exception {
+		private static final long serialVersionUID = 1L;
+		
+		public SyntaxException(int line, String message) {
+			super("line " + line + ": " + message);
+		}
+	}
+	
+	// token types, besides the punctuation characters themselves
+	private static final int EOF = -1;
+	private static final int STRING = 0;
+	private static final int ARROW = 1;
+	
+	private static final int IO_BUFFER_SIZE = 1 << 16;
+	
+	private final Reader in;
+	private final char[] buffer = new char[IO_BUFFER_SIZE];
+	private int pos;
+	private int limit;
+	private final Charset charset;
+	private final boolean mergeEdges;
+	private int line = 1;
+	private int token;
+	private String tokenText;
+	private final StringBuilder tokenBuilder = new StringBuilder();
+	private int tokenLine;
+	
+	private boolean mealy;
+	private final Map<String,Integer> inputIndices = new LinkedHashMap<>();
+	private String[] inputs;
+	private final Map<String,Integer> stateIds = new HashMap<>();
+	private final List<String> stateNames = new ArrayList<>();
+	private final BitSet declared = new BitSet();
+	private final BitSet accepting = new BitSet();
+	private int initial = -1;
+	private long[] edgeOffsets = new long[1024];
+	private int[] edgeLengths = new int[1024];
+	
+	private StreamingTAF2DOT(Reader in, Charset charset, boolean mergeEdges) {
+		this.in = in;
+		this.charset = charset;
+		this.mergeEdges = mergeEdges;
+	}
+	
+	/**
+	 * Converts the TAF file read from {@code in} to DOT, written to {@code out}, using the
+	 * default charset for both. If {@code mergeEdges} is set, parallel edges (i.e., the
+	 * transitions of a state for different inputs to the same successor) are merged into
+	 * a single edge, labeled with the comma-separated labels of the transitions.
+	 */
+	public static void convert(InputStream in, OutputStream out, boolean mergeEdges)
+			throws IOException, SyntaxException {
+		Charset charset = Charset.defaultCharset();
+		new StreamingTAF2DOT(new InputStreamReader(in, charset), charset, mergeEdges).convert(out);
+	}
+	
+	private void convert(OutputStream out) throws IOException, SyntaxException {
+		File spoolFile = File.createTempFile("taf2dot", ".edges");
+		try {
+			try (OutputStream spool = new BufferedOutputStream(new FileOutputStream(spoolFile), IO_BUFFER_SIZE)) {
+				nextToken();
+				parseAutomaton(spool);
+			}
+			write(out, spoolFile);
+		}
+		finally {
+			spoolFile.delete();
+		}
+	}
+	
+	private void parseAutomaton(OutputStream spool) throws IOException, SyntaxException {
+		String type = expectString();
+		switch (type) {
+		case "dfa":
+			mealy = false;
+			break;
+		case "mealy":
+			mealy = true;
+			break;
+		default:
+			throw new SyntaxException(tokenLine, "expected dfa or mealy, found " + type);
+		}
+		for (String input : parseStringSet()) {
+			inputIndices.putIfAbsent(input, inputIndices.size());
+		}
+		inputs = inputIndices.keySet().toArray(new String[inputIndices.size()]);
+		
+		expect('{');
+		int[] targets = new int[inputs.length];
+		String[] outputs = new String[inputs.length];
+		StringBuilder edges = new StringBuilder();
+		long spoolSize = 0L;
+		while (token != '}') {
+			int state = parseStateDeclaration(targets, outputs);
+			edges.setLength(0);
+			appendEdges(state, targets, outputs, edges);
+			byte[] bytes = edges.toString().getBytes(charset);
+			spool.write(bytes);
+			edgeOffsets[state] = spoolSize;
+			edgeLengths[state] = bytes.length;
+			spoolSize += bytes.length;
+		}
+		nextToken();
+		if (token != EOF) {
+			throw new SyntaxException(tokenLine, "unexpected input after the automaton");
+		}
+	}
+	
+	private int parseStateDeclaration(int[] targets, String[] outputs) throws IOException, SyntaxException {
+		int declLine = tokenLine;
+		String name = expectString();
+		int state = lookupState(name);
+		if (declared.get(state)) {
+			throw new SyntaxException(declLine, "state " + name
+					+ " declared twice, merging its declarations is not supported when streaming");
+		}
+		declared.set(state);
+		
+		if (token == '[') {
+			nextToken();
+			List<String> unrecognized = new ArrayList<>();
+			while (true) {
+				String option = expectString();
+				switch (option) {
+				case "initial": case "init":
+					if (initial >= 0) {
+						error(declLine, "duplicate initial state " + name);
+					}
+					else {
+						initial = state;
+					}
+					break;
+				case "accepting": case "acc":
+					if (!mealy) {
+						accepting.set(state);
+						break;
+					}
+					// fall through
+				default:
+					unrecognized.add(option);
+				}
+				if (token != ',') {
+					break;
+				}
+				nextToken();
+			}
+			expect(']');
+			if (!unrecognized.isEmpty()) {
+				warning(declLine, "unrecognized options for state " + name + ": " + unrecognized);
+			}
+		}
+		
+		Arrays.fill(targets, -1);
+		Arrays.fill(outputs, null);
+		expect('{');
+		while (token != '}') {
+			int transLine = tokenLine;
+			List<String> symbols = null;
+			if (token == '*') {
+				nextToken();
+			}
+			else if (token == '{') {
+				symbols = parseStringSet();
+			}
+			else {
+				symbols = Arrays.asList(expectString());
+			}
+			String output = null;
+			if (token == '/') {
+				if (!mealy) {
+					throw new SyntaxException(tokenLine, "DFA transitions must not have outputs");
+				}
+				nextToken();
+				output = expectString();
+			}
+			expect(ARROW);
+			String targetName = expectString();
+			int target = lookupState(targetName);
+			
+			if (symbols == null) {
+				for (int i = 0; i < targets.length; i++) {
+					if (targets[i] < 0) {
+						targets[i] = target;
+						outputs[i] = output;
+					}
+				}
+				if (token != '}') {
+					throw new SyntaxException(tokenLine, "wildcard transition must be the last one of state " + name);
+				}
+				continue;
+			}
+			List<String> unknown = new ArrayList<>();
+			for (String symbol : symbols) {
+				Integer input = inputIndices.get(symbol);
+				if (input == null) {
+					unknown.add(symbol);
+				}
+				else if (targets[input] < 0) {
+					targets[input] = target;
+					outputs[input] = output;
+				}
+				else if (targets[input] != target || !Objects.equals(outputs[input], output)) {
+					// the first transition is kept, identical duplicates are fine
+					error(transLine, "duplicate transition from " + name + " on input " + symbol
+							+ " conflicts with the previous one, ignoring");
+				}
+			}
+			if (!unknown.isEmpty()) {
+				error(transLine, "unknown input symbols for transition from " + name + " to " + targetName
+						+ ": " + unknown);
+			}
+		}
+		nextToken();
+		return state;
+	}
+	
+	private List<String> parseStringSet() throws IOException, SyntaxException {
+		List<String> strings = new ArrayList<>();
+		expect('{');
+		while (true) {
+			strings.add(expectString());
+			if (token != ',') {
+				break;
+			}
+			nextToken();
+		}
+		expect('}');
+		return strings;
+	}
+	
+	private int lookupState(String name) {
+		Integer id = stateIds.get(name);
+		if (id != null) {
+			return id;
+		}
+		int newId = stateNames.size();
+		stateIds.put(name, newId);
+		stateNames.add(name);
+		if (newId == edgeOffsets.length) {
+			edgeOffsets = Arrays.copyOf(edgeOffsets, newId * 2);
+			edgeLengths = Arrays.copyOf(edgeLengths, newId * 2);
+		}
+		return newId;
+	}
+	
+	private void appendEdges(int state, int[] targets, String[] outputs, StringBuilder edges) throws IOException {
+		if (!mergeEdges) {
+			for (int i = 0; i < targets.length; i++) {
+				if (targets[i] >= 0) {
+					appendEdge(state, targets[i], getLabel(i, outputs[i]), edges);
+				}
+			}
+			return;
+		}
+		Map<Integer,StringBuilder> labels = new LinkedHashMap<>();
+		for (int i = 0; i < targets.length; i++) {
+			if (targets[i] >= 0) {
+				StringBuilder label = labels.get(targets[i]);
+				if (label == null) {
+					labels.put(targets[i], new StringBuilder(getLabel(i, outputs[i])));
+				}
+				else {
+					label.append(", ").append(getLabel(i, outputs[i]));
+				}
+			}
+		}
+		for (Map.Entry<Integer,StringBuilder> edge : labels.entrySet()) {
+			appendEdge(state, edge.getKey(), edge.getValue().toString(), edges);
+		}
+	}
+	
+	private String getLabel(int input, String output) {
+		if (!mealy) {
+			return inputs[input];
+		}
+		return inputs[input] + " / " + ((output == null) ? "" : output);
+	}
+	
+	private static void appendEdge(int source, int target, String label, StringBuilder edges) throws IOException {
+		edges.append("\ts").append(source).append(" -> s").append(target).append(" [label=");
+		appendLabel(label, edges);
+		edges.append("];\n");
+	}
+	
+	// same as GraphDOT, which writes labels starting with <HTML> as HTML-like labels
+	private static void appendLabel(String label, Appendable a) throws IOException {
+		if (label.toUpperCase().startsWith("<HTML>")) {
+			a.append('<').append(label.substring(6)).append('>');
+		}
+		else {
+			StringUtil.enquote(label, a);
+		}
+	}
+	
+	private void write(OutputStream out, File spoolFile) throws IOException {
+		Writer w = new BufferedWriter(new OutputStreamWriter(out, charset), IO_BUFFER_SIZE);
+		w.write("digraph g {\n");
+		if (initial >= 0) {
+			w.write("__start0 [label=\"\" shape=\"none\"];\n");
+		}
+		w.write('\n');
+		int numStates = stateNames.size();
+		for (int i = 0; i < numStates; i++) {
+			w.write("\ts" + i + " [shape=\"" + (accepting.get(i) ? "doublecircle" : "circle") + "\" label=\"" + i + "\"];\n");
+		}
+		w.flush();
+		
+		// copy the edges in runs of states whose edges are adjacent in the spool file
+		byte[] bytes = new byte[IO_BUFFER_SIZE];
+		try (RandomAccessFile spool = new RandomAccessFile(spoolFile, "r")) {
+			int i = 0;
+			while (i < numStates) {
+				long start = edgeOffsets[i];
+				long end = start + edgeLengths[i];
+				i++;
+				while (i < numStates && edgeOffsets[i] == end) {
+					end += edgeLengths[i];
+					i++;
+				}
+				spool.seek(start);
+				long remaining = end - start;
+				while (remaining > 0L) {
+					int n = spool.read(bytes, 0, (int) Math.min(bytes.length, remaining));
+					if (n < 0) {
+						throw new IOException("Unexpected end of spooled edges in " + spoolFile);
+					}
+					out.write(bytes, 0, n);
+					remaining -= n;
+				}
+			}
+		}
+		
+		w.write('\n');
+		if (initial >= 0) {
+			w.write("__start0 -> s" + initial + ";\n");
+		}
+		w.write("}\n");
+		w.flush();
+	}
+	
+	private static void error(int line, String message) {
+		System.err.println("Error: line " + line + ": " + message);
+	}
+	
+	private static void warning(int line, String message) {
+		System.err.println("Warning: line " + line + ": " + message);
+	}
+	
+	private String expectString() throws IOException, SyntaxException {
+		if (token != STRING) {
+			throw new SyntaxException(tokenLine, "expected identifier, found " + describeToken());
+		}
+		String text = tokenText;
+		nextToken();
+		return text;
+	}
+	
+	private void expect(int type) throws IOException, SyntaxException {
+		if (token != type) {
+			throw new SyntaxException(tokenLine, "expected " + (type == ARROW ? "->" : "'" + (char) type + "'")
+					+ ", found " + describeToken());
+		}
+		nextToken();
+	}
+	
+	private String describeToken() {
+		switch (token) {
+		case EOF:
+			return "end of file";
+		case STRING:
+			return tokenText;
+		case ARROW:
+			return "->";
+		default:
+			return "'" + (char) token + "'";
+		}
+	}
+	
+	private int peek(int ahead) throws IOException {
+		while (pos + ahead >= limit) {
+			if (pos > 0) {
+				System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+				limit -= pos;
+				pos = 0;
+			}
+			int n = in.read(buffer, limit, buffer.length - limit);
+			if (n < 0) {
+				return -1;
+			}
+			limit += n;
+		}
+		return buffer[pos + ahead];
+	}
+	
+	private int read() throws IOException {
+		int c = peek(0);
+		if (c >= 0) {
+			pos++;
+			if (c == '\n') {
+				line++;
+			}
+		}
+		return c;
+	}
+	
+	private void nextToken() throws IOException, SyntaxException {
+		// skip whitespace and comments
+		while (true) {
+			int c = peek(0);
+			if (c >= 0 && Character.isWhitespace(c)) {
+				read();
+			}
+			else if (c == '/' && peek(1) == '/') {
+				while (peek(0) >= 0 && peek(0) != '\n') {
+					read();
+				}
+			}
+			else if (c == '/' && peek(1) == '*') {
+				int commentLine = line;
+				read();
+				read();
+				while (!(peek(0) == '*' && peek(1) == '/')) {
+					if (read() < 0) {
+						throw new SyntaxException(commentLine, "unterminated comment");
+					}
+				}
+				read();
+				read();
+			}
+			else {
+				break;
+			}
+		}
+		
+		tokenLine = line;
+		int c = peek(0);
+		switch (c) {
+		case -1:
+			token = EOF;
+			return;
+		case '{': case '}': case '[': case ']': case ',': case '*': case '/':
+			token = read();
+			return;
+		case '"':
+			read();
+			tokenBuilder.setLength(0);
+			while ((c = read()) != '"') {
+				if (c == '\\') {
+					c = read();
+				}
+				if (c < 0) {
+					throw new SyntaxException(tokenLine, "unterminated string");
+				}
+				tokenBuilder.append((char) c);
+			}
+			token = STRING;
+			tokenText = tokenBuilder.toString();
+			return;
+		default:
+			if (c == '-' && peek(1) == '>') {
+				read();
+				read();
+				token = ARROW;
+				return;
+			}
+			tokenText = readIdentifier();
+			if (tokenText.isEmpty()) {
+				throw new SyntaxException(tokenLine, "unexpected character '" + (char) c + "'");
+			}
+			token = STRING;
+		}
+	}
+	
+	private String readIdentifier() throws IOException {
+		tokenBuilder.setLength(0);
+		while (true) {
+			int c = peek(0);
+			boolean identChar = (c >= 0) && (Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '$'
+					|| c == '-');
+			// an arrow terminates the identifier, as in "a->b"
+			if (!identChar || (c == '-' && peek(1) == '>')) {
+				return tokenBuilder.toString();
+			}
+			tokenBuilder.append((char) read());
+		}
+	}
+}
@@ -17,6 +17,8 @@
 package de.learnlib.cav2015.taf2dot;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -25,6 +27,22 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 import net.automatalib.automata.FiniteAlphabetAutomaton;
 import net.automatalib.serialization.taf.parser.PrintStreamDiagnosticListener;
@@ -46,40 +64,326 @@ public class TAF2DOT implements CLITool {
 		return "Convert TAF files to GraphVIZ DOT";
 	}
 
+	private static final String USAGE =
+			"Usage: taf2dot [<options...>] [<taf-file-in> [<dot-file-out>]]\n" +
+			"       taf2dot [<options...>] -o <output-dir> <input...>\n" +
+			"Options:\n" +
+			"  -s|-stream            Convert while parsing, without building the automaton\n" +
+			"  -m|-merge-edges       Merge parallel edges (implies -stream)\n" +
+			"  -c|-compare           Convert each input both with and without -stream, and\n" +
+			"                        fail if the DOT outputs differ\n" +
+			"  -o|-output <dir>      Convert all inputs (TAF files, directories searched for\n" +
+			"                        .taf files, or glob patterns such as models/*/*.taf)\n" +
+			"                        to DOT files in the given directory, mirroring the\n" +
+			"                        directory structure of the inputs\n" +
+			"  -j|-jobs <num>        Number of files converted in parallel (default: number\n" +
+			"                        of available processors)";
+	
+	private static final String GLOB_CHARS = "*?[{";
+	
+	private boolean stream = false;
+	private boolean mergeEdges = false;
+	private boolean compare = false;
+	private File outputDir = null;
+	private int numJobs = Runtime.getRuntime().availableProcessors();
+	private final Set<File> outputFiles = new HashSet<>();
+
 	@Override
 	public boolean runMain(String[] args) throws Exception {
-		if (args.length > 2) {
+		List<String> files = new ArrayList<>();
+		int i = 0;
+		while (i < args.length) {
+			String arg = args[i++];
+			switch (arg) {
+			case "-s": case "-stream":
+				stream = true;
+				break;
+			case "-m": case "-merge-edges":
+				stream = true;
+				mergeEdges = true;
+				break;
+			case "-c": case "-compare":
+				compare = true;
+				break;
+			case "-o": case "-output":
+				if (i == args.length) {
+					System.err.println("Error: expected argument to option " + arg);
+					return false;
+				}
+				outputDir = new File(args[i++]);
+				break;
+			case "-j": case "-jobs":
+				if (i == args.length) {
+					System.err.println("Error: expected argument to option " + arg);
+					return false;
+				}
+				try {
+					numJobs = Integer.parseInt(args[i++]);
+				}
+				catch (NumberFormatException ex) {
+					System.err.println("Error: expected numeric argument to option " + arg);
+					return false;
+				}
+				if (numJobs <= 0) {
+					System.err.println("Error: argument to option " + arg + " must be positive");
+					return false;
+				}
+				break;
+			default:
+				if (arg.startsWith("-") && arg.length() > 1) {
+					System.err.println("Error: unknown option " + arg);
+					System.err.println(USAGE);
+					return false;
+				}
+				files.add(arg);
+			}
+		}
+		if (compare && mergeEdges) {
+			System.err.println("Error: options -compare and -merge-edges cannot be combined");
+			return false;
+		}
+		if (outputDir != null) {
+			if (files.isEmpty()) {
+				System.err.println("Error: no input files specified");
+				System.err.println(USAGE);
+				return false;
+			}
+			return convertAll(files);
+		}
+		if (files.size() > 2) {
 			System.err.println("Error: taf2dot requires at most two arguments");
-			System.err.println("Usage: taf2dot [<taf-file-in> [<dot-file-out>]]");
+			System.err.println(USAGE);
 			return false;
 		}
 		InputStream in = System.in;
 		OutputStream out = System.out;
 		try {
-			if (args.length > 0) {
-				in = new BufferedInputStream(new FileInputStream(new File(args[0])));
+			if (files.size() > 0) {
+				in = new BufferedInputStream(new FileInputStream(new File(files.get(0))));
 			}
-			if (args.length > 1) {
-				out = new BufferedOutputStream(new FileOutputStream(new File(args[1])));
+			if (files.size() > 1) {
+				out = new BufferedOutputStream(new FileOutputStream(new File(files.get(1))));
 			}
-			FiniteAlphabetAutomaton<?, ?, ?> automaton = TAFParser.parseAny(in, PrintStreamDiagnosticListener.getStderrDiagnosticListener());
-			OutputStreamWriter osw = new OutputStreamWriter(out);
-			GraphDOT.write(automaton, osw);
-			osw.flush();
+			convert(in, out);
 		}
 		catch (IOException ex) {
 			System.err.println("Fatal: " + ex.getMessage());
 			return false;
 		}
-		catch (TAFParseException ex) {
+		catch (TAFParseException | StreamingTAF2DOT.SyntaxException ex) {
 			System.err.println("Fatal error parsing TAF: " + ex.getMessage());
 		}
+		catch (ComparisonException ex) {
+			System.err.println("Error: " + ex.getMessage());
+			return false;
+		}
 		finally {
 			in.close();
 			out.close();
 		}
 		return true;
 	}
+	
+	private void convert(InputStream in, OutputStream out)
+			throws IOException, TAFParseException, StreamingTAF2DOT.SyntaxException, ComparisonException {
+		if (compare) {
+			compareConversions(in, out);
+		}
+		else if (stream) {
+			StreamingTAF2DOT.convert(in, out, mergeEdges);
+			out.flush();
+		}
+		else {
+			FiniteAlphabetAutomaton<?, ?, ?> automaton = TAFParser.parseAny(in, PrintStreamDiagnosticListener.getStderrDiagnosticListener());
+			OutputStreamWriter osw = new OutputStreamWriter(out);
+			GraphDOT.write(automaton, osw);
+			osw.flush();
+		}
+	}
+	
+	/**
+	 * Converts the input both with the {@code TAFParser} and {@code GraphDOT}, and with
+	 * {@link StreamingTAF2DOT}, and writes the former to {@code out} if both are identical.
+	 */
+	private static void compareConversions(InputStream in, OutputStream out)
+			throws IOException, TAFParseException, StreamingTAF2DOT.SyntaxException, ComparisonException {
+		ByteArrayOutputStream taf = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) >= 0) {
+			taf.write(buffer, 0, n);
+		}
+		ByteArrayOutputStream parsed = new ByteArrayOutputStream();
+		FiniteAlphabetAutomaton<?, ?, ?> automaton = TAFParser.parseAny(new ByteArrayInputStream(taf.toByteArray()),
+				PrintStreamDiagnosticListener.getStderrDiagnosticListener());
+		OutputStreamWriter osw = new OutputStreamWriter(parsed);
+		GraphDOT.write(automaton, osw);
+		osw.flush();
+		ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+		StreamingTAF2DOT.convert(new ByteArrayInputStream(taf.toByteArray()), streamed, false);
+		
+		String[] expected = parsed.toString().split("\n", -1);
+		String[] actual = streamed.toString().split("\n", -1);
+		for (int i = 0; i < Math.max(expected.length, actual.length); i++) {
+			String e = (i < expected.length) ? expected[i] : "end of output";
+			String a = (i < actual.length) ? actual[i] : "end of output";
+			if (!e.equals(a)) {
+				throw new ComparisonException("streaming conversion differs in line " + (i + 1) + ": expected "
+						+ e.trim() + ", found " + a.trim());
+			}
+		}
+		parsed.writeTo(out);
+		out.flush();
+	}
+	
+	private static class ComparisonException extends Exception {
+		private static final long serialVersionUID = 1L;
+		
+		public ComparisonException(String message) {
+			super(message);
+		}
+	}
+	
+	/**
+	 * Converts all given inputs to files in the output directory on a pool of worker
+	 * threads, reporting errors for every single file, and a summary at the end.
+	 */
+	private boolean convertAll(List<String> inputs) throws InterruptedException {
+		Map<File,File> conversions = new LinkedHashMap<>();
+		int failures = 0;
+		for (String input : inputs) {
+			try {
+				collectConversions(input, conversions);
+			}
+			catch (IOException | IllegalArgumentException ex) {
+				System.err.println("Error: " + input + ": " + ex.getMessage());
+				failures++;
+			}
+		}
+		
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(numJobs);
+		List<Future<Long>> results = new ArrayList<>();
+		try {
+			for (Map.Entry<File,File> conversion : conversions.entrySet()) {
+				results.add(executor.submit(() -> convertFile(conversion.getKey(), conversion.getValue())));
+			}
+			long totalBytes = 0L;
+			int converted = 0;
+			for (Future<Long> result : results) {
+				try {
+					totalBytes += result.get();
+					converted++;
+				}
+				catch (ExecutionException ex) {
+					failures++;
+				}
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			double megabytes = totalBytes / (1024.0 * 1024.0);
+			System.out.println(String.format("Converted %d files (%.1f MB) in %.2fs with %d threads: "
+					+ "%.1f files/s, %.1f MB/s, %d failed",
+					converted, megabytes, seconds, numJobs, converted / seconds, megabytes / seconds, failures));
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return failures == 0;
+	}
+	
+	private long convertFile(File input, File output) throws Exception {
+		try {
+			File parent = output.getParentFile();
+			if (parent != null) {
+				parent.mkdirs();
+			}
+			try (InputStream in = new BufferedInputStream(new FileInputStream(input));
+					OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+				convert(in, out);
+			}
+			return input.length();
+		}
+		catch (Exception ex) {
+			System.err.println("Error: " + input + ": " + ex.getMessage());
+			output.delete();
+			throw ex;
+		}
+	}
+	
+	/**
+	 * Adds the conversions of a single input argument, i.e., a TAF file, a directory
+	 * searched for TAF files, or a glob pattern, to the map from input to output files.
+	 * The outputs mirror the paths of the inputs relative to the given directory, or to
+	 * the directory preceding the first path element containing a glob pattern.
+	 */
+	private void collectConversions(String input, Map<File,File> conversions) throws IOException {
+		Path inputPath = Paths.get(input);
+		int globIndex = -1;
+		for (int i = 0; i < inputPath.getNameCount() && globIndex < 0; i++) {
+			String name = inputPath.getName(i).toString();
+			for (char c : GLOB_CHARS.toCharArray()) {
+				if (name.indexOf(c) >= 0) {
+					globIndex = i;
+					break;
+				}
+			}
+		}
+		
+		if (globIndex >= 0) {
+			Path root = inputPath.getRoot();
+			Path base = (globIndex == 0) ? root : inputPath.subpath(0, globIndex);
+			if (root != null && globIndex > 0) {
+				base = root.resolve(base);
+			}
+			PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:"
+					+ inputPath.subpath(globIndex, inputPath.getNameCount()));
+			int before = conversions.size();
+			collectFiles(base, matcher, conversions);
+			if (conversions.size() == before) {
+				throw new IOException("no files match the pattern");
+			}
+		}
+		else if (Files.isDirectory(inputPath)) {
+			collectFiles(inputPath, FileSystems.getDefault().getPathMatcher("glob:**.taf"), conversions);
+		}
+		else if (Files.isRegularFile(inputPath)) {
+			addConversion(inputPath.toFile(), new File(outputDir, dotName(inputPath.getFileName().toString())),
+					conversions);
+		}
+		else {
+			throw new IOException("no such file or directory");
+		}
+	}
+	
+	private void collectFiles(Path base, PathMatcher matcher, Map<File,File> conversions) throws IOException {
+		List<Path> matches = new ArrayList<>();
+		Path walkBase = (base == null) ? Paths.get(".") : base;
+		try (Stream<Path> paths = Files.walk(walkBase)) {
+			paths.filter(Files::isRegularFile)
+					.filter(p -> matcher.matches(walkBase.relativize(p)))
+					.sorted()
+					.forEach(matches::add);
+		}
+		for (Path match : matches) {
+			Path relative = walkBase.relativize(match);
+			Path outputPath = outputDir.toPath().resolve(relative).resolveSibling(dotName(relative.getFileName().toString()));
+			addConversion(match.toFile(), outputPath.toFile(), conversions);
+		}
+	}
+	
+	private void addConversion(File input, File output, Map<File,File> conversions) {
+		if (conversions.containsKey(input)) {
+			return;
+		}
+		if (!outputFiles.add(output)) {
+			throw new IllegalArgumentException("more than one input is converted to " + output);
+		}
+		conversions.put(input, output);
+	}
+	
+	private static String dotName(String tafName) {
+		return (tafName.endsWith(".taf") ? tafName.substring(0, tafName.length() - 4) : tafName) + ".dot";
+	}
 
 
 }
@@ -0,0 +1,4 @@
+@echo off
+set TOOL=%~n0
+%~dp0\run-tool.bat %*
+